@@ -1,13 +1,29 @@
 package gov.usgs.aqcu;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletResponse;
+
 import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
@@ -15,41 +31,194 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import gov.usgs.aqcu.builder.ReportBuilderService;
-import gov.usgs.aqcu.client.JavaToRClient;
+import gov.usgs.aqcu.client.JavaToRStreamingClient;
 import gov.usgs.aqcu.model.ExtremesReport;
 import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
+import gov.usgs.aqcu.serializer.CborWriter;
 
 @RestController
 @RequestMapping("/extremes")
 public class Controller {
 	public static final String UNKNOWN_USERNAME = "unknown";
+	static final String HTML_REPRESENTATION = "html";
+	static final String JSON_REPRESENTATION = "json";
+	static final String CBOR_REPRESENTATION = "cbor";
+	private static final String RETRY_AFTER_SECONDS = "1";
+	private static final List<MediaType> RAW_DATA_MEDIA_TYPES = Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
 
 	private Gson gson;
 	private ReportBuilderService reportBuilderService;
-	private JavaToRClient javaToRClient;
+	private JavaToRStreamingClient javaToRStreamingClient;
+	private ReportValidatorCache reportValidatorCache;
 
 	@Autowired
 	public Controller(
 			ReportBuilderService reportBuilderService,
-		JavaToRClient javaToRClient,
-		Gson gson) {
+		JavaToRStreamingClient javaToRStreamingClient,
+		Gson gson,
+		ReportValidatorCache reportValidatorCache) {
 		this.reportBuilderService = reportBuilderService;
-		this.javaToRClient = javaToRClient;
+		this.javaToRStreamingClient = javaToRStreamingClient;
 		this.gson = gson;
+		this.reportValidatorCache = reportValidatorCache;
 	}
 
+	/**
+	 * Streams the report JSON to JavaToR as it is serialized and the rendered report back onto the
+	 * response as it arrives. The ETag is computed from a digest-only serialization pass, as for
+	 * the raw data. A render failing once the report has started to arrive still fails the
+	 * request, so its connection is closed before the response is ended; see TomcatConfig.
+	 */
 	@GetMapping(produces={MediaType.TEXT_HTML_VALUE})
-	public ResponseEntity<?> getReport(@Validated ExtremesRequestParameters requestParameters) throws Exception {
+	public void getReport(@Validated ExtremesRequestParameters requestParameters,
+			@RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+			HttpServletResponse response) throws Exception {
 		String requestingUser = getRequestingUser();
+		String cachedETag = reportValidatorCache.getETag(HTML_REPRESENTATION, requestParameters, requestingUser);
+		if(ReportValidatorCache.matches(ifNoneMatch, cachedETag)) {
+			setNotModified(response, cachedETag);
+			return;
+		}
+
+		long dataVersion = reportValidatorCache.getDataVersion();
 		ExtremesReport report = reportBuilderService.buildReport(requestParameters, requestingUser);
-		byte[] reportHtml = javaToRClient.render(requestingUser, "extremes", gson.toJson(report, ExtremesReport.class));
-		return new ResponseEntity<byte[]>(reportHtml, new HttpHeaders(), HttpStatus.OK);
+		String eTag = reportValidatorCache.computeETag(HTML_REPRESENTATION, report);
+		if(ReportValidatorCache.matches(ifNoneMatch, eTag)) {
+			reportValidatorCache.putETag(HTML_REPRESENTATION, requestParameters, requestingUser, eTag, dataVersion);
+			setNotModified(response, eTag);
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		response.setContentType(MediaType.TEXT_HTML_VALUE);
+		try {
+			javaToRStreamingClient.render(requestingUser, "extremes", body -> writeReportJson(report, body), response.getOutputStream());
+		} catch (IOException | RuntimeException e) {
+			resetUncommitted(response);
+			throw e;
+		}
+		reportValidatorCache.putETag(HTML_REPRESENTATION, requestParameters, requestingUser, eTag, dataVersion);
 	}
 	
-	@GetMapping(value="/rawData", produces={MediaType.APPLICATION_JSON_VALUE})
-	public ResponseEntity<String> getReportRawData(@Validated ExtremesRequestParameters requestParameters) throws Exception {
-		ExtremesReport report = reportBuilderService.buildReport(requestParameters, getRequestingUser());
-		return new ResponseEntity<String>(gson.toJson(report), new HttpHeaders(), HttpStatus.OK);
+	/**
+	 * Writes the report straight to the response as it is serialized, without building it as a
+	 * String first. The ETag header has to precede the body, so it is computed by a separate
+	 * serialization pass that is only digested.
+	 *
+	 * The report is JSON unless CBOR is preferred by the Accept header; see CborWriter for how
+	 * its values are encoded.
+	 */
+	@GetMapping(value="/rawData", produces={MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+	public void getReportRawData(@Validated ExtremesRequestParameters requestParameters,
+			@RequestHeader(value=HttpHeaders.IF_NONE_MATCH, required=false) String ifNoneMatch,
+			@RequestHeader(value=HttpHeaders.ACCEPT, required=false) String accept,
+			HttpServletResponse response) throws Exception {
+		boolean isCbor = MediaType.APPLICATION_CBOR.equals(getRawDataMediaType(accept));
+		String representation = isCbor ? CBOR_REPRESENTATION : JSON_REPRESENTATION;
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+		String requestingUser = getRequestingUser();
+		String cachedETag = reportValidatorCache.getETag(representation, requestParameters, requestingUser);
+		if(ReportValidatorCache.matches(ifNoneMatch, cachedETag)) {
+			setNotModified(response, cachedETag);
+			return;
+		}
+
+		long dataVersion = reportValidatorCache.getDataVersion();
+		ExtremesReport report = reportBuilderService.buildReport(requestParameters, requestingUser);
+		String eTag = reportValidatorCache.computeETag(representation, report);
+		if(ReportValidatorCache.matches(ifNoneMatch, eTag)) {
+			reportValidatorCache.putETag(representation, requestParameters, requestingUser, eTag, dataVersion);
+			setNotModified(response, eTag);
+			return;
+		}
+
+		response.setStatus(HttpStatus.OK.value());
+		response.setHeader(HttpHeaders.ETAG, eTag);
+		try {
+			if(isCbor) {
+				response.setContentType(MediaType.APPLICATION_CBOR_VALUE);
+				writeReportCbor(report, response.getOutputStream());
+			} else {
+				response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+				response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+				writeReportJson(report, response.getOutputStream());
+			}
+		} catch (IOException | RuntimeException e) {
+			resetUncommitted(response);
+			throw e;
+		}
+		reportValidatorCache.putETag(representation, requestParameters, requestingUser, eTag, dataVersion);
+	}
+
+	/**
+	 * Answers a report whose fetches the report fetch executor had no room for as temporarily
+	 * unavailable, so the client can retry it later.
+	 */
+	@ExceptionHandler(RejectedExecutionException.class)
+	@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+	public void handleRejectedFetch(HttpServletResponse response) {
+		response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+	}
+
+	/**
+	 * Returns the raw data media type most preferred by the Accept header, JSON when there is no
+	 * preference between them or the header cannot be parsed.
+	 */
+	static MediaType getRawDataMediaType(String accept) {
+		List<MediaType> acceptedTypes;
+		try {
+			acceptedTypes = MediaType.parseMediaTypes(accept);
+		} catch (InvalidMediaTypeException e) {
+			return MediaType.APPLICATION_JSON;
+		}
+		MediaType.sortBySpecificityAndQuality(acceptedTypes);
+		for(MediaType acceptedType : acceptedTypes) {
+			if(acceptedType.getQualityValue() == 0) {
+				continue;
+			}
+			for(MediaType rawDataType : RAW_DATA_MEDIA_TYPES) {
+				if(acceptedType.isCompatibleWith(rawDataType)) {
+					return rawDataType;
+				}
+			}
+		}
+		return MediaType.APPLICATION_JSON;
+	}
+
+	/**
+	 * Encodes the report as CBOR onto the stream through a buffered stream, flushing but not closing it.
+	 * The report is serialized to a JSON tree first, which its extreme points keep small.
+	 */
+	void writeReportCbor(ExtremesReport report, OutputStream outputStream) throws IOException {
+		CborWriter writer = new CborWriter(new BufferedOutputStream(outputStream));
+		writer.write(gson.toJsonTree(report, ExtremesReport.class));
+		writer.flush();
+	}
+
+	/**
+	 * Serializes the report onto the stream through a buffered writer, flushing but not closing it.
+	 */
+	void writeReportJson(ExtremesReport report, OutputStream outputStream) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		gson.toJson(report, ExtremesReport.class, gson.newJsonWriter(writer));
+		writer.flush();
+	}
+
+	/**
+	 * Drops the status and ETag set for a response that failed before any of it was sent, so the
+	 * error is not returned with them.
+	 */
+	private void resetUncommitted(HttpServletResponse response) {
+		if(!response.isCommitted()) {
+			response.reset();
+		}
+	}
+
+	private void setNotModified(HttpServletResponse response, String eTag) {
+		response.setStatus(HttpStatus.NOT_MODIFIED.value());
+		response.setHeader(HttpHeaders.ETAG, eTag);
 	}
 
 	String getRequestingUser() {
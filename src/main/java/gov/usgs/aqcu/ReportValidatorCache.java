@@ -0,0 +1,167 @@
+package gov.usgs.aqcu;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.Gson;
+
+import gov.usgs.aqcu.builder.SeriesExtremesCache;
+import gov.usgs.aqcu.model.ExtremesReport;
+import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Computes the ETags of the report endpoints from the report JSON and remembers the last one
+ * returned for each request, so a conditional request can be answered before the report is built.
+ * The ETags are weak: they stand for the report rather than the bytes sent, which are rendered
+ * or encoded from it and may be compressed by the connector, which only compresses responses
+ * without a strong ETag.
+ * An ETag is only remembered once its response has been written, so a failed response is never
+ * validated by a later conditional request.
+ *
+ * The report is built from cached series, so a remembered ETag is only used while the data
+ * version of the series cache is the one read before its report was built: once any cached
+ * series is evicted, expires or is revalidated into different data, or a series that is not
+ * approved passes the short lifetime after which it may have been edited, the report is built
+ * again. A provisional report is so revalidated as often as its series are.
+ * The station and series descriptions and qualifier metadata are refreshed on their own, so a
+ * remembered ETag also expires after its own lifetime.
+ */
+@Component
+public class ReportValidatorCache {
+	public static final String CACHE_NAME = "extremes.reportValidators";
+
+	private final Gson gson;
+	private final SeriesExtremesCache seriesExtremesCache;
+	private final Cache<String, Validator> cache;
+
+	@Autowired
+	public ReportValidatorCache(
+		Gson gson,
+		MeterRegistry meterRegistry,
+		SeriesExtremesCache seriesExtremesCache,
+		@Value("${extremes.validatorCache.maxSize}") long maxSize,
+		@Value("${extremes.validatorCache.ttlSeconds}") long ttlSeconds) {
+		this.gson = gson;
+		this.seriesExtremesCache = seriesExtremesCache;
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, 
+			Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.<String, Validator>build(),
+			CACHE_NAME);
+	}
+
+	/**
+	 * The data version of the series cache, to read before building a report and remember its
+	 * ETag with.
+	 */
+	public long getDataVersion() {
+		return seriesExtremesCache.getDataVersion();
+	}
+
+	/**
+	 * Returns the ETag last returned for the request, or null when there is none or the cached
+	 * series have changed since its report was built.
+	 */
+	public String getETag(String representation, ExtremesRequestParameters requestParameters, String requestingUser) {
+		Validator validator = cache.getIfPresent(getKey(representation, requestParameters, requestingUser));
+		return validator != null && validator.dataVersion == seriesExtremesCache.getDataVersion() ? validator.eTag : null;
+	}
+
+	/**
+	 * Remembers the ETag returned for the request, once the response has been written, with the
+	 * data version read before its report was built.
+	 */
+	public void putETag(String representation, ExtremesRequestParameters requestParameters, String requestingUser, String eTag, long dataVersion) {
+		cache.put(getKey(representation, requestParameters, requestingUser), new Validator(eTag, dataVersion));
+	}
+
+	/**
+	 * Computes the ETag of a report from its JSON.
+	 */
+	public String computeETag(String representation, String reportJson) {
+		return "W/\"" + representation + "-" + DigestUtils.md5DigestAsHex(reportJson.getBytes(StandardCharsets.UTF_8)) + "\"";
+	}
+
+	/**
+	 * Computes the ETag of a report from its JSON, digesting the JSON as it is written instead of
+	 * holding it whole. The ETag is the same as for the JSON string.
+	 */
+	public String computeETag(String representation, ExtremesReport report) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		OutputStream digestStream = new OutputStream() {
+			@Override
+			public void write(int b) {
+				digest.update((byte) b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				digest.update(b, off, len);
+			}
+		};
+		try(Writer writer = new BufferedWriter(new OutputStreamWriter(digestStream, StandardCharsets.UTF_8))) {
+			gson.toJson(report, ExtremesReport.class, gson.newJsonWriter(writer));
+		}
+		return "W/\"" + representation + "-" + String.format("%032x", new BigInteger(1, digest.digest())) + "\"";
+	}
+
+	/**
+	 * Whether an If-None-Match header value matches the ETag. Weak comparison is used, as for any
+	 * GET request.
+	 */
+	public static boolean matches(String ifNoneMatch, String eTag) {
+		if(ifNoneMatch == null || eTag == null) {
+			return false;
+		}
+		for(String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if(candidate.equals("*") || stripWeak(candidate).equals(stripWeak(eTag))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeak(String eTag) {
+		return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+	}
+
+	// The report JSON embeds the full request parameters and the requesting user
+	private String getKey(String representation, ExtremesRequestParameters requestParameters, String requestingUser) {
+		return representation + "|" + requestingUser + "|" + gson.toJson(requestParameters);
+	}
+
+	private static class Validator {
+		private final String eTag;
+		private final long dataVersion;
+
+		Validator(String eTag, long dataVersion) {
+			this.eTag = eTag;
+			this.dataVersion = dataVersion;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package gov.usgs.aqcu;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Counts the bytes each report endpoint writes to its responses, by content type, as the
+ * extremes.responses.bytes metric. These are the bytes before the connector compresses them
+ * (server.compression), which a filter cannot see, so the metric shows the size of the responses
+ * of each endpoint and format rather than the bytes sent. Responses of other content types, such
+ * as errors, are counted as "other".
+ */
+@Component
+public class ResponseMetricsFilter extends OncePerRequestFilter {
+	public static final String METRIC_NAME = "extremes.responses.bytes";
+	private static final String OTHER_CONTENT_TYPE = "other";
+	private static final Map<String, List<MediaType>> ENDPOINT_CONTENT_TYPES = new HashMap<>();
+	static {
+		ENDPOINT_CONTENT_TYPES.put("/extremes", Arrays.asList(MediaType.TEXT_HTML));
+		ENDPOINT_CONTENT_TYPES.put("/extremes/rawData", Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR));
+	}
+
+	// The summaries of each endpoint by content type, registered once
+	private final Map<String, Map<String, DistributionSummary>> summaries = new HashMap<>();
+
+	@Autowired
+	public ResponseMetricsFilter(MeterRegistry meterRegistry) {
+		for(Map.Entry<String, List<MediaType>> endpoint : ENDPOINT_CONTENT_TYPES.entrySet()) {
+			Map<String, DistributionSummary> byContentType = new HashMap<>();
+			for(MediaType mediaType : endpoint.getValue()) {
+				byContentType.put(mediaType.toString(), register(meterRegistry, endpoint.getKey(), mediaType.toString()));
+			}
+			byContentType.put(OTHER_CONTENT_TYPE, register(meterRegistry, endpoint.getKey(), OTHER_CONTENT_TYPE));
+			summaries.put(endpoint.getKey(), byContentType);
+		}
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !summaries.containsKey(getPath(request));
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		CountingResponse countingResponse = new CountingResponse(response);
+		try {
+			filterChain.doFilter(request, countingResponse);
+		} finally {
+			if(countingResponse.outputStream != null) {
+				Map<String, DistributionSummary> byContentType = summaries.get(getPath(request));
+				byContentType.getOrDefault(getContentType(response.getContentType()), byContentType.get(OTHER_CONTENT_TYPE))
+					.record(countingResponse.outputStream.count);
+			}
+		}
+	}
+
+	private static DistributionSummary register(MeterRegistry meterRegistry, String endpoint, String contentType) {
+		return DistributionSummary.builder(METRIC_NAME)
+			.baseUnit("bytes")
+			.tag("endpoint", endpoint)
+			.tag("contentType", contentType)
+			.register(meterRegistry);
+	}
+
+	private static String getPath(HttpServletRequest request) {
+		return request.getRequestURI().substring(request.getContextPath().length());
+	}
+
+	private static String getContentType(String contentType) {
+		if(contentType == null) {
+			return OTHER_CONTENT_TYPE;
+		}
+		try {
+			MediaType mediaType = MediaType.parseMediaType(contentType);
+			return mediaType.getType() + "/" + mediaType.getSubtype();
+		} catch (InvalidMediaTypeException e) {
+			return OTHER_CONTENT_TYPE;
+		}
+	}
+
+	private static class CountingResponse extends HttpServletResponseWrapper {
+		private CountingOutputStream outputStream;
+
+		CountingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if(outputStream == null) {
+				outputStream = new CountingOutputStream(getResponse().getOutputStream());
+			}
+			return outputStream;
+		}
+	}
+
+	private static class CountingOutputStream extends ServletOutputStream {
+		private final ServletOutputStream out;
+		private long count;
+
+		CountingOutputStream(ServletOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+		@Override
+		public boolean isReady() {
+			return out.isReady();
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			out.setWriteListener(writeListener);
+		}
+	}
+}
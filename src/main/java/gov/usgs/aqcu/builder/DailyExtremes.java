@@ -0,0 +1,139 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+/**
+ * Min/max summary of the points of one series on one day: for each side, the extreme value, the
+ * points tying it and, for the multiple flags, the number of points of the day showing the
+ * display of its first point, counted up to two. Summaries of consecutive days merge in day
+ * order into the same result as a scan of all of their points; see MinMaxPartial. A day without
+ * points has no sides.
+ *
+ * A stored summary is stamped with when the approval of its day was applied, and only holds for
+ * as long as the day's approvals have that stamp. Fields are kept as plain values so summaries
+ * are stored as they are by the DailyExtremesStore, to which days it should no longer hold are
+ * given as removed.
+ */
+class DailyExtremes {
+	private String date;
+	private Side max;
+	private Side min;
+	private String approvedAt;
+	private Boolean removed;
+
+	DailyExtremes(LocalDate date, Side max, Side min) {
+		this.date = date.toString();
+		this.max = max;
+		this.min = min;
+	}
+
+	/**
+	 * Marks a day as no longer stored.
+	 */
+	static DailyExtremes removed(LocalDate date) {
+		DailyExtremes result = new DailyExtremes(date, null, null);
+		result.removed = true;
+		return result;
+	}
+
+	LocalDate getDate() {
+		return LocalDate.parse(date);
+	}
+
+	Side getMax() {
+		return max;
+	}
+
+	Side getMin() {
+		return min;
+	}
+
+	boolean isEmpty() {
+		return max == null || min == null;
+	}
+
+	/**
+	 * Whether the sides of the day have their display counts, which summaries stored by earlier
+	 * versions lack.
+	 */
+	boolean hasDisplayCounts() {
+		return isEmpty() || (max.displayCount != null && min.displayCount != null);
+	}
+
+	/**
+	 * When the approval of the day was applied, as of when it was summarized. Null when unknown.
+	 */
+	Instant getApprovedAt() {
+		return approvedAt == null ? null : Instant.parse(approvedAt);
+	}
+
+	DailyExtremes setApprovedAt(Instant approvedAt) {
+		this.approvedAt = approvedAt == null ? null : approvedAt.toString();
+		return this;
+	}
+
+	boolean isRemoved() {
+		return Boolean.TRUE.equals(removed);
+	}
+
+	static class Side {
+		private double value;
+		private Integer displayCount;
+		private List<Point> points;
+
+		Side(double value, List<TimeSeriesPoint> points, int displayCount) {
+			this.value = value;
+			this.displayCount = displayCount;
+			this.points = points.stream().map(Point::new).collect(Collectors.toList());
+		}
+
+		double getValue() {
+			return value;
+		}
+
+		/**
+		 * The number of points of the day showing the display of the first point, up to two.
+		 */
+		int getDisplayCount() {
+			return displayCount == null ? 0 : displayCount;
+		}
+
+		/**
+		 * Rebuilds the points tying the extreme, in series order.
+		 */
+		List<TimeSeriesPoint> getPoints() {
+			return points.stream().map(p -> p.toPoint(value)).collect(Collectors.toList());
+		}
+	}
+
+	private static class Point {
+		private String time;
+		private boolean endOfTimePeriod;
+		private String display;
+
+		Point(TimeSeriesPoint point) {
+			this.time = point.getTimestamp().getDateTimeOffset().toString();
+			this.endOfTimePeriod = Boolean.TRUE.equals(point.getTimestamp().RepresentsEndOfTimePeriod);
+			this.display = point.getValue().getDisplay();
+		}
+
+		TimeSeriesPoint toPoint(double value) {
+			return new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse(time))
+					.setRepresentsEndOfTimePeriod(endOfTimePeriod)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(display)
+					.setNumeric(value)
+				);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package gov.usgs.aqcu.builder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+
+/**
+ * Local, file backed store of the daily min/max summaries of approved days of series, so that a
+ * report over a long period combines the stored days and only fetches the points of the others.
+ * Each series, with its zone offset and daily flag, has a directory in the store directory
+ * holding a file per day with its JSON summary. Each summary is stamped with when the approval
+ * of its day was applied, so the caller can tell when a day was approved again since it was
+ * stored.
+ *
+ * Writes only touch the files of the updated days: each is written to a temporary file that is
+ * then moved over it, so a crash during a write leaves the previous summary of the day whole,
+ * and removed days have their files deleted. Reads only open the files of the days of the
+ * period. Files that cannot be read are skipped, and the single files per series stored by
+ * earlier versions are ignored, so their days are fetched and stored again.
+ *
+ * The store is disabled when no directory is configured, and only used for periods of at least
+ * the configured number of days; shorter periods are cheaper to fetch whole. Store errors are
+ * logged and treated as missing summaries.
+ */
+@Component
+public class DailyExtremesStore {
+	private static final String DAY_SUFFIX = ".json";
+
+	private Logger log = LoggerFactory.getLogger(DailyExtremesStore.class);
+
+	private final Path directory;
+	private final long minDays;
+	private final Gson gson = new Gson();
+
+	@Autowired
+	public DailyExtremesStore(
+		@Value("${extremes.dailyStore.directory}") String directory,
+		@Value("${extremes.dailyStore.minDays}") long minDays) {
+		this.directory = directory == null || directory.trim().isEmpty() ? null : Paths.get(directory.trim());
+		this.minDays = minDays;
+	}
+
+	/**
+	 * Whether the period of the key is long enough to be assembled from stored days.
+	 */
+	boolean isUsedFor(SeriesKey key) {
+		return directory != null && ChronoUnit.DAYS.between(key.getStartDate(), key.getEndDate()) + 1 >= minDays;
+	}
+
+	/**
+	 * Returns the stored summaries of the series of the key for the days of its period. Summaries
+	 * without display counts, stored by earlier versions, are left out to be fetched again.
+	 */
+	Map<LocalDate, DailyExtremes> read(SeriesKey key) {
+		TreeMap<LocalDate, DailyExtremes> result = new TreeMap<>();
+		Path seriesDirectory = getSeriesDirectory(key);
+		if(!Files.isDirectory(seriesDirectory)) {
+			return result;
+		}
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(seriesDirectory, "*" + DAY_SUFFIX)) {
+			for(Path file : files) {
+				LocalDate date = parseDate(file);
+				if(date == null || date.isBefore(key.getStartDate()) || date.isAfter(key.getEndDate())) {
+					continue;
+				}
+				DailyExtremes day = readDay(file);
+				if(day != null && date.equals(day.getDate()) && !day.isRemoved() && day.hasDisplayCounts()) {
+					result.put(date, day);
+				}
+			}
+		} catch (Exception e) {
+			log.error("Exception in read: ", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Stores the summaries of days of the series of the key, replacing any stored for them, and
+	 * removes the days given as removed.
+	 */
+	void write(SeriesKey key, List<DailyExtremes> days) {
+		if(days.isEmpty()) {
+			return;
+		}
+		Path seriesDirectory = getSeriesDirectory(key);
+		try {
+			Files.createDirectories(seriesDirectory);
+		} catch (Exception e) {
+			log.error("Exception in write: ", e.getMessage());
+			return;
+		}
+		for(DailyExtremes day : days) {
+			Path file = seriesDirectory.resolve(day.getDate() + DAY_SUFFIX);
+			Path temp = null;
+			try {
+				if(day.isRemoved()) {
+					Files.deleteIfExists(file);
+					continue;
+				}
+				temp = Files.createTempFile(seriesDirectory, day.getDate().toString(), ".tmp");
+				try(Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+					writer.write(gson.toJson(day));
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (Exception e) {
+				log.error("Exception in write: ", e.getMessage());
+				deleteQuietly(temp);
+			}
+		}
+	}
+
+	private void deleteQuietly(Path temp) {
+		try {
+			if(temp != null) {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			log.error("Exception in deleteQuietly: ", e.getMessage());
+		}
+	}
+
+	// Files that are not named after a day are skipped
+	private LocalDate parseDate(Path file) {
+		String name = file.getFileName().toString();
+		try {
+			return LocalDate.parse(name.substring(0, name.length() - DAY_SUFFIX.length()));
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	// Files that cannot be read, or have no day, are skipped
+	private DailyExtremes readDay(Path file) {
+		try(Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			DailyExtremes day = gson.fromJson(reader, DailyExtremes.class);
+			if(day != null && day.getDate() != null) {
+				return day;
+			}
+		} catch (IOException | RuntimeException e) {
+			log.debug("Skip unreadable daily extremes file: " + e.getMessage());
+		}
+		return null;
+	}
+
+	private Path getSeriesDirectory(SeriesKey key) {
+		String name = key.getUniqueId().replaceAll("[^A-Za-z0-9_-]", "_")
+			+ "_" + key.getZoneOffset().getTotalSeconds()
+			+ (Boolean.TRUE.equals(key.isDaily()) ? "_daily" : "");
+		return directory.resolve(name);
+	}
+}
@@ -0,0 +1,69 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.LocationDescription;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import gov.usgs.aqcu.config.ExecutorConfig;
+import gov.usgs.aqcu.retrieval.LocationDescriptionListService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps location descriptions across report requests, keyed by location identifier. A location
+ * that is not cached is loaded once on the report fetch executor, with every request asking for
+ * it meanwhile sharing that load. Cached locations are reloaded in the background on a fixed
+ * schedule and dropped once they have not been read for expireSeconds.
+ */
+@Component
+public class LocationDescriptionCache {
+	public static final String CACHE_NAME = "extremes.locationDescriptions";
+	private Logger log = LoggerFactory.getLogger(LocationDescriptionCache.class);
+
+	private final AsyncLoadingCache<String, LocationDescription> cache;
+
+	@Autowired
+	public LocationDescriptionCache(
+		LocationDescriptionListService locationDescriptionListService,
+		@Qualifier(ExecutorConfig.REPORT_FETCH_EXECUTOR) Executor loadExecutor,
+		MeterRegistry meterRegistry,
+		@Value("${extremes.locationCache.maxSize}") long maxSize,
+		@Value("${extremes.locationCache.expireSeconds}") long expireSeconds) {
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, 
+			Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterAccess(Duration.ofSeconds(expireSeconds))
+				.executor(loadExecutor)
+				.recordStats()
+				.buildAsync(locationDescriptionListService::getByLocationIdentifier),
+			CACHE_NAME);
+	}
+
+	public CompletableFuture<LocationDescription> get(String locationIdentifier) {
+		return cache.get(locationIdentifier);
+	}
+
+	/**
+	 * Reloads every cached location. Until a reload completes the previous description is
+	 * returned, and a failed reload keeps it.
+	 */
+	@Scheduled(fixedDelayString="${extremes.locationCache.reloadMillis}", initialDelayString="${extremes.locationCache.reloadMillis}")
+	public void reload() {
+		LoadingCache<String, LocationDescription> locations = cache.synchronous();
+		log.debug("Reload " + locations.estimatedSize() + " cached locations");
+		locations.asMap().keySet().forEach(locations::refresh);
+	}
+}
@@ -0,0 +1,207 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+
+/**
+ * Incremental min/max calculation for a single series. Points are fed in series order, either
+ * one at a time or in chunks as they are read, as lists or columns, and finish() returns the
+ * same TimeSeriesMinMax that MinMaxBuilderService.findMinMaxPoints would for the full list. Only
+ * the points tying the current extremes, and a count of each distinct display for the multiple
+ * flags, are retained between calls; see MinMaxPartial.
+ *
+ * Chunks of at least parallelThreshold points are scanned on the common ForkJoinPool, as are
+ * whole TimeSeriesColumns passed to scan(). Instances are not thread safe.
+ */
+public class MinMaxAccumulator {
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 16384;
+
+	private final int parallelThreshold;
+	private final MinMaxPartial partial = new MinMaxPartial();
+	private int count = 0;
+
+	MinMaxAccumulator(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public MinMaxAccumulator add(TimeSeriesPoint point) {
+		partial.add(count++, point, getNumericValue(point), point.getValue().getDisplay());
+		return this;
+	}
+
+	public MinMaxAccumulator addAll(List<TimeSeriesPoint> points) {
+		if(points != null && !points.isEmpty()) {
+			if(points instanceof RandomAccess) {
+				int offset = count;
+				partial.merge(scan(points.size(), parallelThreshold, (result, from, to) -> {
+					for(int i = from; i < to; i++) {
+						TimeSeriesPoint point = points.get(i);
+						result.add(offset + i, point, getNumericValue(point), point.getValue().getDisplay());
+					}
+				}));
+				count += points.size();
+			} else {
+				for(TimeSeriesPoint point : points) {
+					add(point);
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the next points of a series held in columns, such as a run of its days fetched
+	 * separately. Only the points tying the extremes are taken from the columns, which are not
+	 * retained.
+	 */
+	public MinMaxAccumulator addColumns(TimeSeriesColumns columns) {
+		if(columns != null && !columns.isEmpty()) {
+			MinMaxPartial result = scan(columns, 0, parallelThreshold);
+			result.resolvePoints(columns);
+			partial.merge(result);
+			count += columns.size();
+		}
+		return this;
+	}
+
+	public TimeSeriesMinMax finish() {
+		return partial.toMinMax(null);
+	}
+
+	/**
+	 * Finds the min/max points of a whole series held in columns. Only the positions of the
+	 * extreme points are tracked during the scan, and their points are rebuilt at the end.
+	 */
+	static TimeSeriesMinMax scan(TimeSeriesColumns columns, int parallelThreshold) {
+		return scan(columns, 0, parallelThreshold).toMinMax(columns);
+	}
+
+	/**
+	 * Extends the min/max points found for the first points of a series with the points from
+	 * the given position on, scanning only those.
+	 */
+	static TimeSeriesMinMax extend(TimeSeriesMinMax previous, TimeSeriesColumns columns, int from, int parallelThreshold) {
+		MinMaxPartial result = MinMaxPartial.of(previous);
+		result.merge(scan(columns, from, parallelThreshold));
+		return result.toMinMax(columns);
+	}
+
+	/**
+	 * Summarizes the points of a series held in columns by day, in day order. See
+	 * TimeSeriesColumns.getDate() for the day of a point.
+	 */
+	static List<DailyExtremes> summarizeDays(TimeSeriesColumns columns, ZoneOffset zoneOffset) {
+		Map<LocalDate, MinMaxPartial> days = new TreeMap<>();
+		for(int i = 0; i < columns.size(); i++) {
+			days.computeIfAbsent(columns.getDate(i, zoneOffset), d -> new MinMaxPartial())
+				.add(i, null, getNumericValue(columns, i), columns.getDisplay(i));
+		}
+		return days.entrySet().stream()
+			.map(e -> e.getValue().toDailyExtremes(e.getKey(), columns))
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Finds the min/max points of consecutive days from their summaries, given in day order.
+	 */
+	static TimeSeriesMinMax combine(List<DailyExtremes> days) {
+		MinMaxPartial result = new MinMaxPartial();
+		for(DailyExtremes day : days) {
+			result.merge(MinMaxPartial.of(day));
+		}
+		return result.toMinMax(null);
+	}
+
+	private static MinMaxPartial scan(TimeSeriesColumns columns, int offset, int parallelThreshold) {
+		return scan(columns.size() - offset, parallelThreshold, (result, from, to) -> {
+			for(int i = offset + from; i < offset + to; i++) {
+				result.add(i, null, getNumericValue(columns, i), columns.getDisplay(i));
+			}
+		});
+	}
+
+	private static MinMaxPartial scan(int size, int parallelThreshold, RangeScanner scanner) {
+		if(size < parallelThreshold) {
+			MinMaxPartial result = new MinMaxPartial();
+			scanner.scan(result, 0, size);
+			return result;
+		}
+		int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, size / (ForkJoinPool.getCommonPoolParallelism() * 4));
+		return ForkJoinPool.commonPool().invoke(new MinMaxTask(scanner, 0, size, chunkSize));
+	}
+
+	/**
+	 * Doubles order exactly as their BigDecimal.valueOf conversions do, but that conversion
+	 * rejects NaN and infinite values, so those are still treated as invalid input here.
+	 */
+	static double getNumericValue(TimeSeriesPoint point) {
+		double value = point.getValue().getNumeric();
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new NumberFormatException("Infinite or NaN point value at " + point.getTimestamp().getDateTimeOffset());
+		}
+		return value;
+	}
+
+	private static double getNumericValue(TimeSeriesColumns columns, int index) {
+		double value = columns.getValue(index);
+		if(Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new NumberFormatException("Infinite or NaN point value at " + columns.getTime(index));
+		}
+		return value;
+	}
+
+	/**
+	 * Adds the points in [from, to) of some series to a partial.
+	 */
+	@FunctionalInterface
+	private interface RangeScanner {
+		void scan(MinMaxPartial result, int from, int to);
+	}
+
+	/**
+	 * Splits a range of the points in half until it is no larger than the chunk size, scanning
+	 * the chunks independently and merging the partials left to right.
+	 */
+	private static class MinMaxTask extends RecursiveTask<MinMaxPartial> {
+		private static final long serialVersionUID = 1L;
+		private final transient RangeScanner scanner;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+
+		MinMaxTask(RangeScanner scanner, int from, int to, int chunkSize) {
+			this.scanner = scanner;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected MinMaxPartial compute() {
+			if(to - from <= chunkSize) {
+				MinMaxPartial result = new MinMaxPartial();
+				scanner.scan(result, from, to);
+				return result;
+			}
+
+			int middle = (from + to) >>> 1;
+			MinMaxTask left = new MinMaxTask(scanner, from, middle, chunkSize);
+			left.fork();
+			MinMaxPartial right = new MinMaxTask(scanner, middle, to, chunkSize).compute();
+			MinMaxPartial result = left.join();
+			result.merge(right);
+			return result;
+		}
+	}
+}
@@ -1,67 +1,146 @@
 package gov.usgs.aqcu.builder;
 
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.RandomAccess;
 import java.time.Instant;
+import java.time.ZoneOffset;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import gov.usgs.aqcu.model.TimeSeriesMinMax;
 @Service
 public class MinMaxBuilderService {
 	private Logger log = LoggerFactory.getLogger(MinMaxBuilderService.class);
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 250000;
+
+	private int parallelThreshold;
+
+	public MinMaxBuilderService() {
+		this(DEFAULT_PARALLEL_THRESHOLD);
+	}
+
+	@Autowired
+	public MinMaxBuilderService(@Value("${extremes.minMax.parallelThreshold}") int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
 	
+	/**
+	 * Finds the points holding the minimum and maximum values of the series, keeping every point
+	 * that ties an extreme in the order it appears, and flags extremes whose displayed value is
+	 * shared by other points. See MinMaxAccumulator.
+	 */
 	public TimeSeriesMinMax findMinMaxPoints(List<TimeSeriesPoint> points) {
-        TimeSeriesMinMax result = new TimeSeriesMinMax();
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
+
+		try {
+			if(points != null && !points.isEmpty()) {
+				result = newAccumulator().addAll(points).finish();
+			}
+		} catch (Exception e) {
+			log.error("Exception in findMinMaxPoints: ", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Same as findMinMaxPoints, over a series already held in columns.
+	 */
+	public TimeSeriesMinMax findMinMaxColumnPoints(TimeSeriesColumns columns) {
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
+
+		try {
+			if(columns != null && !columns.isEmpty()) {
+				result = MinMaxAccumulator.scan(columns, parallelThreshold);
+			}
+		} catch (Exception e) {
+			log.error("Exception in findMinMaxColumnPoints: ", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Same as findMinMaxColumnPoints, over a series read in consecutive parts, each added to the
+	 * accumulator as soon as it is read; see newAccumulator(). Returns the accumulator to add the
+	 * next part to, or null once a part could not be added, in which case the min/max points of
+	 * the series are empty.
+	 */
+	public MinMaxAccumulator addMinMaxColumnPoints(MinMaxAccumulator accumulator, TimeSeriesColumns part) {
+		if(accumulator != null) {
+			try {
+				return accumulator.addColumns(part);
+			} catch (Exception e) {
+				log.error("Exception in addMinMaxColumnPoints: ", e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Extends the min/max points found for the first points of a series held in columns with
+	 * the points from the given position on, which were appended since.
+	 */
+	public TimeSeriesMinMax extendMinMaxColumnPoints(TimeSeriesMinMax previous, TimeSeriesColumns columns, int from) {
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
+
+		try {
+			if(from >= columns.size()) {
+				result = previous;
+			} else {
+				result = MinMaxAccumulator.extend(previous, columns, from, parallelThreshold);
+			}
+		} catch (Exception e) {
+			log.error("Exception in extendMinMaxColumnPoints: ", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Summarizes the min/max points of a series held in columns by day, in day order, to be
+	 * combined with the summaries of other days by findMinMaxDailyPoints. Returns null when the
+	 * series cannot be summarized.
+	 */
+	List<DailyExtremes> summarizeDays(TimeSeriesColumns columns, ZoneOffset zoneOffset) {
+		try {
+			return MinMaxAccumulator.summarizeDays(columns, zoneOffset);
+		} catch (Exception e) {
+			log.error("Exception in summarizeDays: ", e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Same as findMinMaxPoints, over the points of consecutive days given by their summaries in
+	 * day order.
+	 */
+	TimeSeriesMinMax findMinMaxDailyPoints(List<DailyExtremes> days) {
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
+
+		try {
+			if(days != null && !days.isEmpty()) {
+				result = MinMaxAccumulator.combine(days);
+			}
+		} catch (Exception e) {
+			log.error("Exception in findMinMaxDailyPoints: ", e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Starts an incremental min/max calculation for a series whose points are read in chunks.
+	 */
+	public MinMaxAccumulator newAccumulator() {
+		return new MinMaxAccumulator(parallelThreshold);
+	}
 
-        List<TimeSeriesPoint> maxSet = new ArrayList<>();
-        List<TimeSeriesPoint> minSet = new ArrayList<>();
-        BigDecimal maxValue = null;
-        BigDecimal minValue = null;
-        
-        try {
-	        if(points != null && !points.isEmpty()) {
-	            for(TimeSeriesPoint point : points) {
-	                BigDecimal pointValue = BigDecimal.valueOf(point.getValue().getNumeric());
-	
-	                // Check for Max
-	                if(maxValue == null || pointValue.compareTo(maxValue) > 0) {
-	                    maxValue = pointValue;
-	                    maxSet = new ArrayList<>();
-	                    maxSet.add(point);
-	                } else if(pointValue.compareTo(maxValue) == 0) {
-	                    maxSet.add(point);
-	                }
-	
-	                // Check for Min
-	                if(minValue == null || pointValue.compareTo(minValue) < 0) {
-	                    minValue = pointValue;
-	                    minSet = new ArrayList<>();
-	                    minSet.add(point);
-	                } else if(pointValue.compareTo(minValue) == 0) {
-	                    minSet.add(point);
-	                }
-	            }
-	        }
-	
-	        result.setMaxPoints(maxSet);
-	        result.setMinPoints(minSet);
-        } catch (Exception e) {
-        	log.error("Exception in findMinMaxPoints: ", e.getMessage());
-        }
-	    return result;
-        
-    }
-	
     public TimeSeriesMinMax findMinMaxMatchingPoints(TimeSeriesMinMax primaryMinMax, List<TimeSeriesPoint> relatedPoints) {
         TimeSeriesMinMax result = new TimeSeriesMinMax();
 
@@ -73,35 +152,108 @@ public class MinMaxBuilderService {
         return result;
     }
 	
-    protected List<TimeSeriesPoint> findMatchingPoints(List<TimeSeriesPoint> primaryPoints, List<TimeSeriesPoint> relatedPoints) {
-        List<TimeSeriesPoint> matchingPoints = new ArrayList<>();
-        
-        try {
-	        if(primaryPoints != null && !primaryPoints.isEmpty() && relatedPoints != null && !relatedPoints.isEmpty()) {
-	            Map<Instant, TimeSeriesPoint> relatedPointMap = pointListToMap(relatedPoints);
-	
-	            for(TimeSeriesPoint primaryPoint : primaryPoints) {
-	                TimeSeriesPoint relatedPoint = relatedPointMap.get(primaryPoint.getTimestamp().DateTimeOffset);
-	                if(relatedPoint != null) {
-	                    matchingPoints.add(relatedPoint);
-	                }
-	            }
-	        }
-        } catch (Exception e) {
-        	log.error("Exception in findMatchingPoints: ", e.getMessage());
-        }
-        return matchingPoints;
-    }
+	/**
+	 * Same as findMinMaxMatchingPoints, against a related series held in columns.
+	 */
+	public TimeSeriesMinMax findMinMaxRelatedPoints(TimeSeriesMinMax primaryMinMax, TimeSeriesColumns relatedColumns) {
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
 
-    protected Map<Instant, TimeSeriesPoint> pointListToMap(List<TimeSeriesPoint> pointList) {
-    	try {
-	        if(pointList != null && !pointList.isEmpty()) {
-	            return pointList.stream().collect(Collectors.toMap(t -> t.getTimestamp().getDateTimeOffset(), t->t));
-	        } 
-    	} catch (Exception e) {
-        	log.error("Exception in pointListToMap: ", e.getMessage());
-        }
-	        
-        return new HashMap<>();
-    }
+		if(primaryMinMax != null) {
+			result.setMaxPoints(findRelatedPoints(primaryMinMax.getMaxPoints(), relatedColumns));
+			result.setMinPoints(findRelatedPoints(primaryMinMax.getMinPoints(), relatedColumns));
+		}
+
+		return result;
+	}
+
+	protected List<TimeSeriesPoint> findRelatedPoints(List<TimeSeriesPoint> primaryPoints, TimeSeriesColumns relatedColumns) {
+		List<TimeSeriesPoint> matchingPoints = new ArrayList<>();
+
+		try {
+			if(primaryPoints != null && relatedColumns != null && !relatedColumns.isEmpty()) {
+				for(TimeSeriesPoint primaryPoint : primaryPoints) {
+					TimeSeriesPoint relatedPoint = relatedColumns.get(primaryPoint.getTimestamp().getDateTimeOffset());
+					if(relatedPoint != null) {
+						matchingPoints.add(relatedPoint);
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.error("Exception in findRelatedPoints: ", e.getMessage());
+		}
+		return matchingPoints;
+	}
+
+	/**
+	 * Finds the related points sharing a timestamp with each of the primary points. Both lists
+	 * are expected in time order, as returned by AQUARIUS, so the related series is searched in
+	 * place (binary search, or a single merge pass when it is not random access) rather than
+	 * being indexed first.
+	 */
+	protected List<TimeSeriesPoint> findMatchingPoints(List<TimeSeriesPoint> primaryPoints, List<TimeSeriesPoint> relatedPoints) {
+		List<TimeSeriesPoint> matchingPoints = new ArrayList<>();
+
+		try {
+			if(primaryPoints != null && !primaryPoints.isEmpty() && relatedPoints != null && !relatedPoints.isEmpty()) {
+				if(relatedPoints instanceof RandomAccess) {
+					for(TimeSeriesPoint primaryPoint : primaryPoints) {
+						TimeSeriesPoint relatedPoint = findPointAt(relatedPoints, primaryPoint.getTimestamp().getDateTimeOffset());
+						if(relatedPoint != null) {
+							matchingPoints.add(relatedPoint);
+						}
+					}
+				} else {
+					Iterator<TimeSeriesPoint> related = relatedPoints.iterator();
+					TimeSeriesPoint relatedPoint = related.next();
+					for(TimeSeriesPoint primaryPoint : primaryPoints) {
+						Instant time = primaryPoint.getTimestamp().getDateTimeOffset();
+						while(relatedPoint.getTimestamp().getDateTimeOffset().isBefore(time) && related.hasNext()) {
+							relatedPoint = related.next();
+						}
+						if(relatedPoint.getTimestamp().getDateTimeOffset().equals(time)) {
+							matchingPoints.add(relatedPoint);
+						}
+					}
+				}
+			}
+		} catch (Exception e) {
+			log.error("Exception in findMatchingPoints: ", e.getMessage());
+		}
+		return matchingPoints;
+	}
+
+	/**
+	 * Binary searches a time ordered, random access list of points for the point at the given time.
+	 */
+	protected TimeSeriesPoint findPointAt(List<TimeSeriesPoint> sortedPoints, Instant time) {
+		int low = 0;
+		int high = sortedPoints.size() - 1;
+
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			TimeSeriesPoint point = sortedPoints.get(middle);
+			int comparison = point.getTimestamp().getDateTimeOffset().compareTo(time);
+			if(comparison < 0) {
+				low = middle + 1;
+			} else if(comparison > 0) {
+				high = middle - 1;
+			} else {
+				return point;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copies a series into columns, to be shared by the min/max scan and every related point
+	 * lookup against it.
+	 */
+	public TimeSeriesColumns buildColumns(List<TimeSeriesPoint> pointList) {
+		try {
+			return TimeSeriesColumns.of(pointList);
+		} catch (Exception e) {
+			log.error("Exception in buildColumns: ", e.getMessage());
+		}
+		return TimeSeriesColumns.of(null);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,256 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+
+/**
+ * Running min/max state for a contiguous run of points in a series. Partials computed over
+ * neighbouring runs can be merged in series order. The points tying an extreme are tracked by
+ * their position in the series, along with the point itself when the caller has one; positions
+ * without a point are rebuilt from the series columns when the result is produced.
+ *
+ * The multiple flags of the result tell whether any other point of the series displays the same
+ * value as the first extreme point. Displays need not follow the numeric values, as the rounding
+ * of a series can differ between periods, so the points sharing a display cannot be told from
+ * the points nearest to an extreme. Each display is counted during the scan instead, up to two,
+ * which is all the flags need, so a partial holds one count per distinct display rather than the
+ * display of every point.
+ *
+ * A partial rebuilt from a finished result or a day's summary only knows the counts of the
+ * displays of its own first extreme points. A point of it sharing the display of a later extreme
+ * also shares the display of its own extreme in between, as long as its values are rounded one
+ * way, so the counts are still complete.
+ */
+class MinMaxPartial {
+	private final Extreme max = new Extreme(true);
+	private final Extreme min = new Extreme(false);
+	private final Map<String, Integer> displayCounts = new HashMap<>();
+
+	void add(int index, TimeSeriesPoint point, double value, String display) {
+		max.add(index, point, value);
+		min.add(index, point, value);
+		if(display != null) {
+			displayCounts.merge(display, 1, MinMaxPartial::addCounts);
+		}
+	}
+
+	/**
+	 * Rebuilds the partial of a finished result, to merge later points into.
+	 */
+	static MinMaxPartial of(TimeSeriesMinMax minMax) {
+		MinMaxPartial result = new MinMaxPartial();
+		result.max.restore(minMax.getMaxPoints());
+		result.min.restore(minMax.getMinPoints());
+		result.restoreCount(minMax.getMaxPoints(), Boolean.TRUE.equals(minMax.getMultipleMaxFlag()) ? 2 : 1);
+		result.restoreCount(minMax.getMinPoints(), Boolean.TRUE.equals(minMax.getMultipleMinFlag()) ? 2 : 1);
+		return result;
+	}
+
+	/**
+	 * Rebuilds the partial of the points of one day from their summary.
+	 */
+	static MinMaxPartial of(DailyExtremes day) {
+		MinMaxPartial result = new MinMaxPartial();
+		if(!day.isEmpty()) {
+			result.max.restore(day.getMax());
+			result.min.restore(day.getMin());
+			result.restoreCount(day.getMax().getPoints(), day.getMax().getDisplayCount());
+			result.restoreCount(day.getMin().getPoints(), day.getMin().getDisplayCount());
+		}
+		return result;
+	}
+
+	/**
+	 * Summarizes the partial computed over the points of one day.
+	 *
+	 * @param columns the series the partial was computed over, as for toMinMax().
+	 */
+	DailyExtremes toDailyExtremes(LocalDate date, TimeSeriesColumns columns) {
+		if(isEmpty()) {
+			return new DailyExtremes(date, null, null);
+		}
+		return new DailyExtremes(date, toSide(max, columns), toSide(min, columns));
+	}
+
+	/**
+	 * Rebuilds the points tracked only by their position from the columns they were scanned
+	 * from, so the partial no longer needs the columns.
+	 */
+	void resolvePoints(TimeSeriesColumns columns) {
+		max.points.resolve(columns);
+		min.points.resolve(columns);
+	}
+
+	/**
+	 * Merges in the partial computed for the points immediately following this one.
+	 */
+	void merge(MinMaxPartial later) {
+		max.merge(later.max);
+		min.merge(later.min);
+		later.displayCounts.forEach((display, count) -> displayCounts.merge(display, count, MinMaxPartial::addCounts));
+	}
+
+	boolean isEmpty() {
+		return max.isEmpty();
+	}
+
+	/**
+	 * @param columns the series the partial was computed over, used to rebuild points that were
+	 * only tracked by position. May be null when every point was added along with its position.
+	 */
+	TimeSeriesMinMax toMinMax(TimeSeriesColumns columns) {
+		TimeSeriesMinMax result = new TimeSeriesMinMax();
+		if(!isEmpty()) {
+			List<TimeSeriesPoint> maxPoints = max.points.toList(columns);
+			List<TimeSeriesPoint> minPoints = min.points.toList(columns);
+			result.setMaxPoints(maxPoints);
+			result.setMultipleMaxFlag(isMultiple(maxPoints.get(0)));
+			result.setMinPoints(minPoints);
+			result.setMultipleMinFlag(isMultiple(minPoints.get(0)));
+		}
+		return result;
+	}
+
+	private boolean isMultiple(TimeSeriesPoint extremePoint) {
+		String display = extremePoint.getValue().getDisplay();
+		return display != null && displayCounts.getOrDefault(display, 0) > 1;
+	}
+
+	// The count of the display of the first point of a side, which both sides may share
+	private void restoreCount(List<TimeSeriesPoint> extremePoints, int count) {
+		if(extremePoints == null || extremePoints.isEmpty() || extremePoints.get(0).getValue().getDisplay() == null) {
+			return;
+		}
+		displayCounts.merge(extremePoints.get(0).getValue().getDisplay(), count, Math::max);
+	}
+
+	private DailyExtremes.Side toSide(Extreme extreme, TimeSeriesColumns columns) {
+		List<TimeSeriesPoint> points = extreme.points.toList(columns);
+		String display = points.get(0).getValue().getDisplay();
+		return new DailyExtremes.Side(extreme.value, points, display == null ? 0 : displayCounts.getOrDefault(display, 0));
+	}
+
+	private static Integer addCounts(Integer a, Integer b) {
+		return Math.min(2, a + b);
+	}
+
+	private static class Extreme {
+		private final boolean isMax;
+		private double value;
+		private PointList points = new PointList();
+
+		Extreme(boolean isMax) {
+			this.isMax = isMax;
+		}
+
+		boolean isEmpty() {
+			return points.size == 0;
+		}
+
+		void restore(List<TimeSeriesPoint> extremePoints) {
+			if(extremePoints == null || extremePoints.isEmpty()) {
+				return;
+			}
+			value = MinMaxAccumulator.getNumericValue(extremePoints.get(0));
+			for(TimeSeriesPoint point : extremePoints) {
+				points.add(-1, point);
+			}
+		}
+
+		void restore(DailyExtremes.Side side) {
+			value = side.getValue();
+			for(TimeSeriesPoint point : side.getPoints()) {
+				points.add(-1, point);
+			}
+		}
+
+		boolean isBeyond(double candidate) {
+			return isMax ? candidate > value : candidate < value;
+		}
+
+		void add(int index, TimeSeriesPoint point, double pointValue) {
+			if(isEmpty() || isBeyond(pointValue)) {
+				value = pointValue;
+				points.reset(index, point);
+			} else if(pointValue == value) {
+				points.add(index, point);
+			}
+		}
+
+		void merge(Extreme later) {
+			if(later.isEmpty()) {
+				return;
+			}
+
+			if(isEmpty() || isBeyond(later.value)) {
+				value = later.value;
+				points = later.points;
+			} else if(later.value == value) {
+				points.addAll(later.points);
+			}
+		}
+	}
+
+	/**
+	 * Growable list of the positions, and points when known, tying an extreme. It is cleared in
+	 * place whenever a new extreme is found.
+	 */
+	private static class PointList {
+		private int[] indexes = new int[4];
+		private TimeSeriesPoint[] points = new TimeSeriesPoint[4];
+		private int size = 0;
+
+		void reset(int index, TimeSeriesPoint point) {
+			Arrays.fill(points, 0, size, null);
+			size = 0;
+			add(index, point);
+		}
+
+		void add(int index, TimeSeriesPoint point) {
+			if(size == indexes.length) {
+				grow(size * 2);
+			}
+			indexes[size] = index;
+			points[size] = point;
+			size++;
+		}
+
+		void addAll(PointList other) {
+			if(size + other.size > indexes.length) {
+				grow(Math.max(size * 2, size + other.size));
+			}
+			System.arraycopy(other.indexes, 0, indexes, size, other.size);
+			System.arraycopy(other.points, 0, points, size, other.size);
+			size += other.size;
+		}
+
+		private void grow(int capacity) {
+			indexes = Arrays.copyOf(indexes, capacity);
+			points = Arrays.copyOf(points, capacity);
+		}
+
+		void resolve(TimeSeriesColumns columns) {
+			for(int i = 0; i < size; i++) {
+				if(points[i] == null) {
+					points[i] = columns.getPoint(indexes[i]);
+				}
+			}
+		}
+
+		List<TimeSeriesPoint> toList(TimeSeriesColumns columns) {
+			List<TimeSeriesPoint> result = new ArrayList<>(size);
+			for(int i = 0; i < size; i++) {
+				result.add(points[i] != null ? points[i] : columns.getPoint(indexes[i]));
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.QualifierMetadata;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import gov.usgs.aqcu.config.ExecutorConfig;
+import gov.usgs.aqcu.retrieval.QualifierLookupService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps qualifier metadata across report requests, keyed by qualifier identifier. The qualifiers
+ * of a series repeat the same identifiers many times over, so lookups are made by distinct
+ * identifier, and identifiers that are not cached are looked up together in one call to
+ * QualifierLookupService. Cached metadata is refreshed in the background on the report fetch
+ * executor once refreshSeconds old.
+ */
+@Component
+public class QualifierMetadataCache {
+	public static final String CACHE_NAME = "extremes.qualifierMetadata";
+
+	private final LoadingCache<String, QualifierMetadata> cache;
+
+	@Autowired
+	public QualifierMetadataCache(
+		QualifierLookupService qualifierLookupService,
+		@org.springframework.beans.factory.annotation.Qualifier(ExecutorConfig.REPORT_FETCH_EXECUTOR) Executor refreshExecutor,
+		MeterRegistry meterRegistry,
+		@Value("${extremes.qualifierCache.maxSize}") long maxSize,
+		@Value("${extremes.qualifierCache.refreshSeconds}") long refreshSeconds) {
+		this(qualifierLookupService, refreshExecutor, meterRegistry, maxSize, refreshSeconds, Ticker.systemTicker());
+	}
+
+	QualifierMetadataCache(QualifierLookupService qualifierLookupService, Executor refreshExecutor, MeterRegistry meterRegistry, 
+			long maxSize, long refreshSeconds, Ticker ticker) {
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, 
+			Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.refreshAfterWrite(Duration.ofSeconds(refreshSeconds))
+				.executor(refreshExecutor)
+				.ticker(ticker)
+				.recordStats()
+				.build(new QualifierMetadataLoader(qualifierLookupService)),
+			CACHE_NAME);
+	}
+
+	/**
+	 * Returns the metadata found for the qualifiers, by qualifier identifier.
+	 */
+	public Map<String, QualifierMetadata> getByQualifierList(List<Qualifier> qualifierList) {
+		Set<String> identifiers = new LinkedHashSet<>();
+		for(Qualifier qualifier : qualifierList) {
+			identifiers.add(qualifier.getIdentifier());
+		}
+		return cache.getAll(identifiers);
+	}
+
+	private static class QualifierMetadataLoader implements CacheLoader<String, QualifierMetadata> {
+		private final QualifierLookupService qualifierLookupService;
+
+		QualifierMetadataLoader(QualifierLookupService qualifierLookupService) {
+			this.qualifierLookupService = qualifierLookupService;
+		}
+
+		@Override
+		public QualifierMetadata load(String identifier) {
+			return loadAll(Collections.singleton(identifier)).get(identifier);
+		}
+
+		@Override
+		public Map<String, QualifierMetadata> loadAll(Iterable<? extends String> identifiers) {
+			List<Qualifier> qualifiers = new ArrayList<>();
+			identifiers.forEach(i -> qualifiers.add(new Qualifier().setIdentifier(i)));
+			return qualifierLookupService.getByQualifierList(qualifiers);
+		}
+	}
+}
@@ -1,9 +1,20 @@
 package gov.usgs.aqcu.builder;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -11,11 +22,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.QualifierMetadata;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDataServiceResponse;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDescription;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIdListServiceResponse;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIds;
 
+import gov.usgs.aqcu.config.ExecutorConfig;
 import gov.usgs.aqcu.model.ExtremesMinMax;
 import gov.usgs.aqcu.model.ExtremesPoint;
 import gov.usgs.aqcu.model.ExtremesQualifier;
@@ -23,10 +39,8 @@ import gov.usgs.aqcu.model.ExtremesReport;
 import gov.usgs.aqcu.model.ExtremesReportMetadata;
 import gov.usgs.aqcu.model.TimeSeriesMinMax;
 import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
-import gov.usgs.aqcu.retrieval.LocationDescriptionListService;
-import gov.usgs.aqcu.retrieval.QualifierLookupService;
+import gov.usgs.aqcu.retrieval.TimeSeriesChangeListService;
 import gov.usgs.aqcu.retrieval.TimeSeriesDataService;
-import gov.usgs.aqcu.retrieval.TimeSeriesDescriptionListService;
 import gov.usgs.aqcu.util.AqcuTimeUtils;
 import gov.usgs.aqcu.util.LogExecutionTime;
 import gov.usgs.aqcu.util.TimeSeriesUtils;
@@ -38,140 +52,476 @@ public class ReportBuilderService {
 	public static final String REPORT_TYPE = "extremes";
 	public static final String PRIMARY_RELATED_KEY = "relatedPrimary";
 	public static final String UPCHAIN_RELATED_KEY = "relatedUpchain";
+	public static final String METADATA_ONLY = "MetadataOnly";
 
-	private LocationDescriptionListService locationDescriptionListService;
+	private LocationDescriptionCache locationDescriptionCache;
 	private MinMaxBuilderService minMaxBuilderService;
-	private TimeSeriesDescriptionListService timeSeriesDescriptionListService;
+	private TimeSeriesDescriptionCache timeSeriesDescriptionCache;
 	private TimeSeriesDataService timeSeriesDataService;
-	private QualifierLookupService qualifierLookupService;
+	private QualifierMetadataCache qualifierMetadataCache;
+	private Executor fetchExecutor;
+	private SeriesExtremesCache seriesExtremesCache;
+	private TimeSeriesChangeListService timeSeriesChangeListService;
+	private DailyExtremesStore dailyExtremesStore;
+	private ConcurrentMap<List<Object>, CompletableFuture<ReportData>> reportBuilds = new ConcurrentHashMap<>();
 
 	@Autowired
 	public ReportBuilderService(
-		LocationDescriptionListService locationDescriptionListService,
+		LocationDescriptionCache locationDescriptionCache,
 		MinMaxBuilderService minMaxBuilderService,
-		TimeSeriesDescriptionListService timeSeriesDescriptionListService,
+		TimeSeriesDescriptionCache timeSeriesDescriptionCache,
 		TimeSeriesDataService timeSeriesDataService,
-		QualifierLookupService qualifierLookupService) {
-		this.locationDescriptionListService = locationDescriptionListService;
+		QualifierMetadataCache qualifierMetadataCache,
+		@org.springframework.beans.factory.annotation.Qualifier(ExecutorConfig.REPORT_FETCH_EXECUTOR) Executor fetchExecutor,
+		SeriesExtremesCache seriesExtremesCache,
+		TimeSeriesChangeListService timeSeriesChangeListService,
+		DailyExtremesStore dailyExtremesStore) {
+		this.locationDescriptionCache = locationDescriptionCache;
 		this.minMaxBuilderService = minMaxBuilderService;
-		this.timeSeriesDescriptionListService = timeSeriesDescriptionListService;
+		this.timeSeriesDescriptionCache = timeSeriesDescriptionCache;
 		this.timeSeriesDataService = timeSeriesDataService;
-		this.qualifierLookupService = qualifierLookupService;
+		this.qualifierMetadataCache = qualifierMetadataCache;
+		this.fetchExecutor = fetchExecutor;
+		this.seriesExtremesCache = seriesExtremesCache;
+		this.timeSeriesChangeListService = timeSeriesChangeListService;
+		this.dailyExtremesStore = dailyExtremesStore;
 	}
 	
 	@LogExecutionTime
 	public ExtremesReport buildReport(ExtremesRequestParameters requestParameters, String requestingUser) {
-	ExtremesReport report = new ExtremesReport();
+		ExtremesReport report = new ExtremesReport();
+		ReportData reportData = getReportData(requestParameters);
+
+		// Output to report
+		report.setPrimary(reportData.getPrimary());
+		report.setUpchain(reportData.getUpchain());
+		report.setDv(reportData.getDv());
+
+		//Report Metadata
+		report.setReportMetadata(getReportMetadata(requestParameters,
+			reportData.getTimeSeriesDescriptions(),
+			reportData.getPrimaryDescription(),
+			requestingUser,
+			reportData.getStationName(),
+			reportData.getQualifierMetadata()
+		));
+		return report;
+	}
+
+	/**
+	 * Returns the report data for the requested series and period. A request arriving while an
+	 * identical one is being built waits for that build and shares its result instead of
+	 * starting its own.
+	 */
+	protected ReportData getReportData(ExtremesRequestParameters requestParameters) {
+		List<Object> reportKey = getReportKey(requestParameters);
+		CompletableFuture<ReportData> build = new CompletableFuture<>();
+		CompletableFuture<ReportData> runningBuild = reportBuilds.putIfAbsent(reportKey, build);
+
+		if(runningBuild != null) {
+			log.debug("Wait for identical report build in progress");
+			return await(runningBuild);
+		}
+
+		try {
+			build.complete(buildReportData(requestParameters));
+		} catch (RuntimeException | Error e) {
+			build.completeExceptionally(e);
+		} finally {
+			reportBuilds.remove(reportKey, build);
+		}
+		return await(build);
+	}
+
+	/**
+	 * Identifies the report data built for a request: its series and its period.
+	 */
+	protected List<Object> getReportKey(ExtremesRequestParameters requestParameters) {
+		return Arrays.asList(
+			requestParameters.getPrimaryTimeseriesIdentifier(),
+			requestParameters.getUpchainTimeseriesIdentifier(),
+			requestParameters.getDerivedTimeseriesIdentifier(),
+			requestParameters.getStartInstant(ZoneOffset.UTC),
+			requestParameters.getEndInstant(ZoneOffset.UTC)
+		);
+	}
+
+	protected ReportData buildReportData(ExtremesRequestParameters requestParameters) {
 	ExtremesMinMax primaryOutput = new ExtremesMinMax();
 	ExtremesMinMax upchainOutput = new ExtremesMinMax();
 	ExtremesMinMax derivedOutput = new ExtremesMinMax();
-	List<Qualifier> qualifiers = new ArrayList<>();
 	
 		// All TS Metadata
 		log.debug("Get time series descriptions");
 		Map<String, TimeSeriesDescription> timeSeriesDescriptions = 
-				timeSeriesDescriptionListService.getTimeSeriesDescriptionList(new ArrayList<>(requestParameters.getTsIdSet()))
-					.stream().collect(Collectors.toMap(t -> t.getUniqueId(), t -> t));
+				timeSeriesDescriptionCache.getTimeSeriesDescriptions(requestParameters.getTsIdSet());
 		
-		// Primary TS Data
-		log.debug("Get primary time series description/data/min max points");
+		// Start all TS Data fetches before waiting on any of them, fetching each distinct series once
+		log.debug("Get primary, upchain and derived time series data/min max points");
+		Map<SeriesKey, CompletableFuture<SeriesExtremes>> seriesFetches = new HashMap<>();
 		TimeSeriesDescription primaryDescription = timeSeriesDescriptions.get(requestParameters.getPrimaryTimeseriesIdentifier());
-		ZoneOffset primaryZoneOffset = TimeSeriesUtils.getZoneOffset(primaryDescription);
-		Boolean primaryIsDaily = TimeSeriesUtils.isDailyTimeSeries(primaryDescription);
-		
-		TimeSeriesDataServiceResponse primaryData = timeSeriesDataService
-				.get(primaryDescription.getUniqueId(), requestParameters,  primaryZoneOffset, primaryIsDaily, false, false, null);
-		
-		TimeSeriesMinMax primaryMinMax = null;
+		TimeSeriesDescription upchainDescription = timeSeriesDescriptions.get(requestParameters.getUpchainTimeseriesIdentifier());
+		TimeSeriesDescription derivedDescription = timeSeriesDescriptions.get(requestParameters.getDerivedTimeseriesIdentifier());
+		CompletableFuture<String> stationNameFuture = lookupStationName(primaryDescription);
+
+		CompletableFuture<SeriesExtremes> primaryFuture = 
+				fetchSeriesExtremes(seriesFetches, primaryDescription, requestParameters, TimeSeriesUtils.isDailyTimeSeries(primaryDescription));
+		CompletableFuture<SeriesExtremes> upchainFuture = upchainDescription == null ? CompletableFuture.completedFuture(null) :
+				fetchSeriesExtremes(seriesFetches, upchainDescription, requestParameters, TimeSeriesUtils.isDailyTimeSeries(upchainDescription));
+		CompletableFuture<SeriesExtremes> derivedFuture = derivedDescription == null ? CompletableFuture.completedFuture(null) :
+				fetchSeriesExtremes(seriesFetches, derivedDescription, requestParameters, true);
 
-		if(primaryData != null && !primaryData.getPoints().isEmpty()) {
-			primaryMinMax = minMaxBuilderService.findMinMaxPoints(primaryData.getPoints());
-			primaryOutput.setMaxPoints(getExtremesPoints(primaryMinMax.getMaxPoints(), primaryIsDaily, primaryZoneOffset));
-			primaryOutput.setMultipleMaxFlag(getMultipleMinMaxFlag(primaryMinMax.getMaxPoints().get(0),primaryData.getPoints()));
-			primaryOutput.setMinPoints(getExtremesPoints(primaryMinMax.getMinPoints(), primaryIsDaily, primaryZoneOffset));
-			primaryOutput.setMultipleMinFlag(getMultipleMinMaxFlag(primaryMinMax.getMinPoints().get(0),primaryData.getPoints()));
-			primaryOutput.setQualifiers(getExtremesQualifiers(primaryData.getQualifiers(), primaryIsDaily, primaryZoneOffset));
-			qualifiers.addAll(primaryData.getQualifiers());
+		// Look up the qualifiers of each series as soon as its data arrives
+		List<CompletableFuture<Map<String, QualifierMetadata>>> qualifierMetadataFutures = seriesFetches.values().stream()
+			.map(f -> f.thenCompose(s -> lookupQualifierMetadata(s == null ? null : s.getQualifiers(), fetchExecutor)))
+			.collect(Collectors.toList());
+
+		// Primary TS Data
+		SeriesExtremes primary = await(primaryFuture);
+
+		if(primary != null) {
+			setMinMaxOutput(primaryOutput, primary);
 		}
 
 		// Upchain TS Data
-		log.debug("Get upchain time series description/data/min max points");
-		TimeSeriesDescription upchainDescription = timeSeriesDescriptions.get(requestParameters.getUpchainTimeseriesIdentifier());
-		TimeSeriesDataServiceResponse upchainData = null;
-
-		if(upchainDescription != null) {
-			ZoneOffset upchainZoneOffset = TimeSeriesUtils.getZoneOffset(upchainDescription);
-			Boolean upchainIsDaily = TimeSeriesUtils.isDailyTimeSeries(upchainDescription);
-			upchainData = timeSeriesDataService
-				.get(upchainDescription.getUniqueId(), requestParameters,  upchainZoneOffset, upchainIsDaily, false, false, null);
-			if(upchainData != null && !upchainData.getPoints().isEmpty()) {
-				TimeSeriesMinMax upchainMinMax = minMaxBuilderService.findMinMaxPoints(upchainData.getPoints());
-				upchainOutput.setMaxPoints(getExtremesPoints(upchainMinMax.getMaxPoints(), upchainIsDaily, upchainZoneOffset));
-				upchainOutput.setMultipleMaxFlag(getMultipleMinMaxFlag(upchainMinMax.getMaxPoints().get(0),upchainData.getPoints()));
-				upchainOutput.setMinPoints(getExtremesPoints(upchainMinMax.getMinPoints(), upchainIsDaily, upchainZoneOffset));
-				upchainOutput.setMultipleMinFlag(getMultipleMinMaxFlag(upchainMinMax.getMinPoints().get(0),upchainData.getPoints()));
-				upchainOutput.setQualifiers(getExtremesQualifiers(upchainData.getQualifiers(), upchainIsDaily, upchainZoneOffset));
-				qualifiers.addAll(upchainData.getQualifiers());
-
-				// Find related data
-				if(primaryMinMax != null && upchainMinMax != null) {
-					TimeSeriesMinMax relatedUpchainMinMax = minMaxBuilderService.findMinMaxMatchingPoints(primaryMinMax, upchainData.getPoints());
-					TimeSeriesMinMax relatedPrimaryMinMax = minMaxBuilderService.findMinMaxMatchingPoints(upchainMinMax, primaryData.getPoints());
-
-					primaryOutput.setMaxRelatedPoints(
-						getExtremesPoints(relatedUpchainMinMax.getMaxPoints(), upchainIsDaily, upchainZoneOffset),
-						UPCHAIN_RELATED_KEY
-					);
-					primaryOutput.setMinRelatedPoints(
-						getExtremesPoints(relatedUpchainMinMax.getMinPoints(), upchainIsDaily, upchainZoneOffset),
-						UPCHAIN_RELATED_KEY
-					);
-					upchainOutput.setMaxRelatedPoints(
-						getExtremesPoints(relatedPrimaryMinMax.getMaxPoints(), primaryIsDaily, primaryZoneOffset),
-						PRIMARY_RELATED_KEY
-					);
-					upchainOutput.setMinRelatedPoints(
-						getExtremesPoints(relatedPrimaryMinMax.getMinPoints(), primaryIsDaily, primaryZoneOffset),
-						PRIMARY_RELATED_KEY
-					);
-				}
+		SeriesExtremes upchain = await(upchainFuture);
+
+		if(upchain != null) {
+			setMinMaxOutput(upchainOutput, upchain);
+
+			// Find related data
+			if(primary != null) {
+				TimeSeriesMinMax relatedUpchainMinMax = minMaxBuilderService.findMinMaxRelatedPoints(primary.getMinMax(), 
+					getRelatedColumns(upchainDescription, requestParameters, upchain, primary.getMinMax()));
+				TimeSeriesMinMax relatedPrimaryMinMax = minMaxBuilderService.findMinMaxRelatedPoints(upchain.getMinMax(), 
+					getRelatedColumns(primaryDescription, requestParameters, primary, upchain.getMinMax()));
+
+				primaryOutput.setMaxRelatedPoints(
+					getExtremesPoints(relatedUpchainMinMax.getMaxPoints(), upchain.isDaily(), upchain.getZoneOffset()),
+					UPCHAIN_RELATED_KEY
+				);
+				primaryOutput.setMinRelatedPoints(
+					getExtremesPoints(relatedUpchainMinMax.getMinPoints(), upchain.isDaily(), upchain.getZoneOffset()),
+					UPCHAIN_RELATED_KEY
+				);
+				upchainOutput.setMaxRelatedPoints(
+					getExtremesPoints(relatedPrimaryMinMax.getMaxPoints(), primary.isDaily(), primary.getZoneOffset()),
+					PRIMARY_RELATED_KEY
+				);
+				upchainOutput.setMinRelatedPoints(
+					getExtremesPoints(relatedPrimaryMinMax.getMinPoints(), primary.isDaily(), primary.getZoneOffset()),
+					PRIMARY_RELATED_KEY
+				);
 			}
 		}
 		
 		// derived TS Data
-		log.debug("Get derived time series description/data/min max points");
-		TimeSeriesDescription derivedDescription = timeSeriesDescriptions.get(requestParameters.getDerivedTimeseriesIdentifier());
-		TimeSeriesDataServiceResponse derivedData = null;
-
-		if(derivedDescription != null) {
-			ZoneOffset derivedZoneOffset = TimeSeriesUtils.getZoneOffset(derivedDescription);
-			derivedData = timeSeriesDataService
-				.get(derivedDescription.getUniqueId(), requestParameters,  derivedZoneOffset, true, false, false, null);
-
-			if(derivedData != null && !derivedData.getPoints().isEmpty()) {
-				TimeSeriesMinMax derivedMinMax = minMaxBuilderService.findMinMaxPoints(derivedData.getPoints());
-				derivedOutput.setMaxPoints(getExtremesPoints(derivedMinMax.getMaxPoints(), true, derivedZoneOffset));
-				derivedOutput.setMultipleMaxFlag(getMultipleMinMaxFlag(derivedMinMax.getMaxPoints().get(0),derivedData.getPoints()));
-				derivedOutput.setMinPoints(getExtremesPoints(derivedMinMax.getMinPoints(), true, derivedZoneOffset));
-				derivedOutput.setMultipleMinFlag(getMultipleMinMaxFlag(derivedMinMax.getMinPoints().get(0),derivedData.getPoints()));
-				derivedOutput.setQualifiers(getExtremesQualifiers(derivedData.getQualifiers(), true, derivedZoneOffset));
-				qualifiers.addAll(derivedData.getQualifiers());
-			}
-		}
+		SeriesExtremes derived = await(derivedFuture);
 
-		// Output to report
-		report.setPrimary(primaryOutput);
-		report.setUpchain(upchainOutput);
-		report.setDv(derivedOutput);
+		if(derived != null) {
+			setMinMaxOutput(derivedOutput, derived);
+		}
 
-		//Report Metadata
-		report.setReportMetadata(getReportMetadata(requestParameters,
+		return new ReportData(primaryOutput, upchainOutput, derivedOutput,
 			timeSeriesDescriptions,
 			primaryDescription,
-			requestingUser,
-			qualifiers
+			stationNameFuture,
+			qualifierMetadataFutures
+		);
+	}
+
+	/**
+	 * Starts the fetch of a series, reusing the fetch already started for the report when the
+	 * same series is requested again with the same daily flag and zone, and otherwise going
+	 * through the series cache.
+	 */
+	protected CompletableFuture<SeriesExtremes> fetchSeriesExtremes(Map<SeriesKey, CompletableFuture<SeriesExtremes>> seriesFetches, 
+			TimeSeriesDescription description, ExtremesRequestParameters requestParameters, Boolean isDaily) {
+		SeriesKey key = getSeriesKey(description, requestParameters, isDaily);
+		String locationIdentifier = description.getLocationIdentifier();
+		return seriesFetches.computeIfAbsent(key, k -> seriesExtremesCache.get(k, 
+			c -> CompletableFuture.supplyAsync(() -> loadSeriesExtremes(c, locationIdentifier, requestParameters), fetchExecutor),
+			(c, cached) -> CompletableFuture.supplyAsync(() -> updateSeriesExtremes(c, locationIdentifier, requestParameters, cached), fetchExecutor)
 		));
-		return report;
+	}
+
+	protected SeriesKey getSeriesKey(TimeSeriesDescription description, ExtremesRequestParameters requestParameters, Boolean isDaily) {
+		ZoneOffset zoneOffset = TimeSeriesUtils.getZoneOffset(description);
+		return new SeriesKey(description.getUniqueId(), 
+			requestParameters.getStartInstant(zoneOffset), requestParameters.getEndInstant(zoneOffset), zoneOffset, isDaily);
+	}
+
+	/**
+	 * Fetches the data of a series, reducing it to its min/max points once it arrives. Returns
+	 * null when the series has no points. The watermark of a series that is not approved over the
+	 * whole period is seeded from the time the fetch started, so no change made while the data is
+	 * being fetched is missed; see SeriesExtremesCache.getChangesSinceToken().
+	 *
+	 * Days of the period that are approved in a cached series are taken from the cache, and only
+	 * the remaining runs of days are fetched. Periods long enough for the daily store are loaded
+	 * from it instead; see loadSummarizedSeriesExtremes().
+	 */
+	protected SeriesExtremes loadSeriesExtremes(SeriesKey key, String locationIdentifier, ExtremesRequestParameters requestParameters) {
+		Instant fetchedAt = Instant.now();
+		if(dailyExtremesStore.isUsedFor(key)) {
+			return loadSummarizedSeriesExtremes(key, requestParameters, fetchedAt);
+		}
+		List<SeriesSegment> segments = SeriesSegment.plan(key, seriesExtremesCache.getApprovedSegments(key));
+		if(segments.size() == 1 && !segments.get(0).isLoaded()) {
+			log.debug("Get time series data/min max points for " + key);
+			TimeSeriesDataServiceResponse data = timeSeriesDataService
+				.get(key.getUniqueId(), requestParameters, key.getZoneOffset(), key.isDaily(), false, false, null);
+
+			if(data == null || data.getPoints().isEmpty()) {
+				return null;
+			}
+			// Only the columns and the extreme points are kept, so the response points can be released
+			TimeSeriesMinMax minMax = minMaxBuilderService.findMinMaxPoints(data.getPoints());
+			TimeSeriesColumns columns = minMaxBuilderService.buildColumns(data.getPoints());
+			return new SeriesExtremes(key.getZoneOffset(), key.isDaily(), columns, minMax, data.getQualifiers(), 
+				data.getApprovals(), seriesExtremesCache.getChangesSinceToken(key, data.getApprovals(), fetchedAt));
+		}
+
+		// Each segment is scanned as soon as it is loaded, while the next ones are still to be fetched
+		log.debug("Get time series data/min max points for " + key + " from segments " + segments);
+		MinMaxAccumulator minMax = minMaxBuilderService.newAccumulator();
+		List<SeriesSegment> loaded = new ArrayList<>();
+		List<TimeSeriesColumns> parts = new ArrayList<>();
+		for(SeriesSegment segment : segments) {
+			SeriesSegment part = segment.isLoaded() ? segment : fetchSeriesSegment(key, segment);
+			TimeSeriesColumns days = part.getDayColumns(key.getZoneOffset());
+			minMax = minMaxBuilderService.addMinMaxColumnPoints(minMax, days);
+			loaded.add(part);
+			parts.add(days);
+		}
+		TimeSeriesColumns columns = TimeSeriesColumns.concat(parts);
+		if(columns.isEmpty()) {
+			return null;
+		}
+		List<Approval> approvals = SeriesSegment.joinApprovals(loaded, key.getZoneOffset());
+		return new SeriesExtremes(key.getZoneOffset(), key.isDaily(), columns, minMax == null ? new TimeSeriesMinMax() : minMax.finish(), 
+			SeriesSegment.joinQualifiers(loaded, key.getZoneOffset()), approvals, 
+			seriesExtremesCache.getChangesSinceToken(key, approvals, fetchedAt));
+	}
+
+	/**
+	 * Loads a series over a long period from the daily store. Only the metadata of the whole
+	 * period is fetched, for its qualifiers and approvals. Approved days with a summary stored
+	 * under their current approval are not fetched; the points of the other days are, and are
+	 * summarized by day. The summaries of the fetched approved days are stored for later
+	 * reports, stamped with their approval, and those of days no longer approved are removed. The min/max points are combined from the summaries of all
+	 * days, which keep the points tying each day's extremes, so the days holding them need no
+	 * fetch either.
+	 *
+	 * The columns only hold the fetched days; see getRelatedColumns().
+	 */
+	protected SeriesExtremes loadSummarizedSeriesExtremes(SeriesKey key, ExtremesRequestParameters requestParameters, Instant fetchedAt) {
+		TimeSeriesDataServiceResponse metadata = timeSeriesDataService
+			.get(key.getUniqueId(), requestParameters, key.getZoneOffset(), key.isDaily(), false, false, METADATA_ONLY);
+		if(metadata == null) {
+			return null;
+		}
+		Instant changesSinceToken = seriesExtremesCache.getChangesSinceToken(key, metadata.getApprovals(), fetchedAt);
+
+		Map<LocalDate, DailyExtremes> stored = dailyExtremesStore.read(key);
+		Map<LocalDate, Instant> approvedDates = new HashMap<>();
+		List<LocalDate> summarizedDates = new ArrayList<>();
+		for(LocalDate[] approved : seriesExtremesCache.getApprovedDays(key, metadata.getApprovals())) {
+			for(LocalDate date = approved[0]; !date.isAfter(approved[1]); date = date.plusDays(1)) {
+				Instant approvedAt = seriesExtremesCache.getApprovedAt(key, metadata.getApprovals(), date);
+				approvedDates.put(date, approvedAt);
+				if(stored.containsKey(date) && Objects.equals(stored.get(date).getApprovedAt(), approvedAt)) {
+					summarizedDates.add(date);
+				}
+			}
+		}
+		List<SeriesSegment> summarized = SeriesSegment.missing(summarizedDates).stream()
+			.map(s -> new SeriesSegment(s.getStartDate(), s.getEndDate(), TimeSeriesColumns.of(null), null, null))
+			.collect(Collectors.toList());
+
+		List<SeriesSegment> fetched = SeriesSegment.plan(key, summarized).stream()
+			.filter(s -> !s.isLoaded())
+			.map(s -> fetchSeriesSegment(key, s))
+			.collect(Collectors.toList());
+		log.debug("Get time series data for " + key + " except summarized days " + summarized + ", fetching " + fetched);
+		TimeSeriesColumns columns = SeriesSegment.joinColumns(fetched, key.getZoneOffset());
+		List<DailyExtremes> fetchedDays = minMaxBuilderService.summarizeDays(columns, key.getZoneOffset());
+		if(fetchedDays == null) {
+			return new SeriesExtremes(key.getZoneOffset(), key.isDaily(), columns, new TimeSeriesMinMax(), metadata.getQualifiers(), 
+				metadata.getApprovals(), changesSinceToken, summarized);
+		}
+
+		// Approved days fetched without points are stored as empty days
+		Map<LocalDate, DailyExtremes> fetchedByDate = fetchedDays.stream().collect(Collectors.toMap(DailyExtremes::getDate, d -> d));
+		List<DailyExtremes> updates = new ArrayList<>();
+		for(SeriesSegment segment : fetched) {
+			for(LocalDate date = segment.getStartDate(); !date.isAfter(segment.getEndDate()); date = date.plusDays(1)) {
+				if(approvedDates.containsKey(date)) {
+					updates.add(fetchedByDate.getOrDefault(date, new DailyExtremes(date, null, null))
+						.setApprovedAt(approvedDates.get(date)));
+				} else if(stored.containsKey(date)) {
+					updates.add(DailyExtremes.removed(date));
+				}
+			}
+		}
+		dailyExtremesStore.write(key, updates);
+
+		List<DailyExtremes> days = new ArrayList<>(fetchedDays);
+		summarizedDates.forEach(d -> days.add(stored.get(d)));
+		days.sort(Comparator.comparing(DailyExtremes::getDate));
+		if(columns.isEmpty() && days.stream().allMatch(DailyExtremes::isEmpty)) {
+			return null;
+		}
+		return new SeriesExtremes(key.getZoneOffset(), key.isDaily(), columns, minMaxBuilderService.findMinMaxDailyPoints(days), 
+			metadata.getQualifiers(), metadata.getApprovals(), changesSinceToken, summarized);
+	}
+
+	/**
+	 * The columns of a series to look up the points related to the given min/max points of
+	 * another series in. Only the points of the days it fetched are in the columns of a series
+	 * loaded from the daily store, so the summarized days the min/max points fall on are fetched
+	 * for the lookup, once for as long as the series is cached.
+	 */
+	protected TimeSeriesColumns getRelatedColumns(TimeSeriesDescription description, ExtremesRequestParameters requestParameters, 
+			SeriesExtremes series, TimeSeriesMinMax minMax) {
+		if(!series.isSummarized()) {
+			return series.getColumns();
+		}
+
+		List<Instant> times = new ArrayList<>();
+		for(List<TimeSeriesPoint> points : Arrays.asList(minMax.getMaxPoints(), minMax.getMinPoints())) {
+			if(points != null) {
+				points.forEach(p -> times.add(p.getTimestamp().getDateTimeOffset()));
+			}
+		}
+		List<LocalDate> dates = series.getSummarizedDates(times);
+		if(dates.isEmpty()) {
+			return series.getColumns();
+		}
+
+		List<LocalDate> missingDates = dates.stream()
+			.filter(d -> series.getFetchedSummarizedDay(d) == null)
+			.collect(Collectors.toList());
+		if(!missingDates.isEmpty()) {
+			SeriesKey key = getSeriesKey(description, requestParameters, series.isDaily());
+			for(SeriesSegment missing : SeriesSegment.missing(missingDates)) {
+				SeriesSegment fetched = fetchSeriesSegment(key, missing);
+				for(LocalDate date = missing.getStartDate(); !date.isAfter(missing.getEndDate()); date = date.plusDays(1)) {
+					series.putFetchedSummarizedDay(date, fetched.getColumns().slice(date, date, key.getZoneOffset()));
+				}
+			}
+		}
+
+		List<TimeSeriesColumns> parts = new ArrayList<>();
+		parts.add(series.getColumns());
+		dates.forEach(d -> parts.add(series.getFetchedSummarizedDay(d)));
+		return TimeSeriesColumns.concat(parts);
+	}
+
+	/**
+	 * Fetches the days of a segment missing from the cache.
+	 */
+	protected SeriesSegment fetchSeriesSegment(SeriesKey key, SeriesSegment segment) {
+		ExtremesRequestParameters segmentParameters = new ExtremesRequestParameters();
+		segmentParameters.setStartDate(segment.getStartDate());
+		segmentParameters.setEndDate(segment.getEndDate());
+		TimeSeriesDataServiceResponse data = timeSeriesDataService
+			.get(key.getUniqueId(), segmentParameters, key.getZoneOffset(), key.isDaily(), false, false, null);
+
+		if(data == null) {
+			return new SeriesSegment(segment.getStartDate(), segment.getEndDate(), TimeSeriesColumns.of(null), null, null);
+		}
+		return new SeriesSegment(segment.getStartDate(), segment.getEndDate(), minMaxBuilderService.buildColumns(data.getPoints()), 
+			data.getQualifiers(), data.getApprovals());
+	}
+
+	/**
+	 * Brings a provisional cached series up to date from its watermark. The series is returned as
+	 * it is when AQUARIUS does not list it, or lists it with no change to its points within the
+	 * period. When points were only appended after the latest cached one, the days from the first
+	 * appended point on are fetched and only their new points are scanned and added. Any other
+	 * change, including a listing without a first changed point, as for a change of its approvals
+	 * or qualifiers, any change to a series loaded from the daily store, or a change token AQUARIUS
+	 * no longer accepts, loads the series again.
+	 */
+	protected SeriesExtremes updateSeriesExtremes(SeriesKey key, String locationIdentifier, ExtremesRequestParameters requestParameters, 
+			SeriesExtremes cached) {
+		TimeSeriesUniqueIdListServiceResponse changes = getChangesSince(locationIdentifier, cached.getChangesSinceToken());
+		if(changes == null || changes.getNextToken() == null || Boolean.TRUE.equals(changes.TokenExpired)) {
+			return loadSeriesExtremes(key, locationIdentifier, requestParameters);
+		}
+
+		List<TimeSeriesUniqueIds> listed = changes.getTimeSeriesUniqueIds() == null ? new ArrayList<>() : changes.getTimeSeriesUniqueIds().stream()
+			.filter(c -> key.getUniqueId().equals(c.getUniqueId()))
+			.collect(Collectors.toList());
+		if(listed.isEmpty()) {
+			log.debug("No change to time series data for " + key);
+			return cached.withChangesSinceToken(changes.getNextToken());
+		}
+		if(listed.stream().anyMatch(c -> c.getFirstPointChanged() == null)) {
+			// Listed for a change of its metadata, approvals or qualifiers
+			log.debug("Time series changed without changed points, reload " + key);
+			return loadSeriesExtremes(key, locationIdentifier, requestParameters);
+		}
+
+		Instant firstPointChanged = listed.stream()
+			.map(c -> c.getFirstPointChanged())
+			.min(Comparator.naturalOrder())
+			.get();
+		if(firstPointChanged.isAfter(key.getEndTime())) {
+			log.debug("No change to time series data for " + key);
+			return cached.withChangesSinceToken(changes.getNextToken());
+		}
+
+		Instant lastTime = cached.getColumns().getLastTime();
+		boolean noMinMax = cached.getMinMax().getMaxPoints() == null || cached.getMinMax().getMaxPoints().isEmpty();
+		if(lastTime == null || !firstPointChanged.isAfter(lastTime) || noMinMax || cached.isSummarized()) {
+			log.debug("Time series data changed at " + firstPointChanged + ", reload " + key);
+			return loadSeriesExtremes(key, locationIdentifier, requestParameters);
+		}
+
+		log.debug("Time series data appended from " + firstPointChanged + " for " + key);
+		LocalDate firstDay = firstPointChanged.atOffset(key.getZoneOffset()).toLocalDate();
+		SeriesSegment appended = fetchSeriesSegment(key, SeriesSegment.missing(firstDay, key.getEndDate()));
+		TimeSeriesColumns columns = TimeSeriesColumns.concat(Arrays.asList(cached.getColumns(), appended.getColumns().after(lastTime)));
+		return new SeriesExtremes(key.getZoneOffset(), key.isDaily(), columns, 
+			minMaxBuilderService.extendMinMaxColumnPoints(cached.getMinMax(), columns, cached.getColumns().size()), 
+			SeriesSegment.append(cached.getQualifiers(), appended.getQualifiers(), q -> Arrays.asList(q.getIdentifier(), q.getStartTime())), 
+			SeriesSegment.append(cached.getApprovals(), appended.getApprovals(), a -> Arrays.asList(a.getApprovalLevel(), a.getStartTime())), 
+			changes.getNextToken());
+	}
+
+	protected TimeSeriesUniqueIdListServiceResponse getChangesSince(String locationIdentifier, Instant changesSinceToken) {
+		try {
+			return timeSeriesChangeListService.getChangesSince(locationIdentifier, changesSinceToken);
+		} catch (Exception e) {
+			log.error("Exception in getChangesSince: ", e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Waits for a fetch, rethrowing anything it failed with as it was thrown on the fetch thread.
+	 */
+	protected <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if(e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	protected void setMinMaxOutput(ExtremesMinMax output, SeriesExtremes series) {
+		output.setMaxPoints(getExtremesPoints(series.getMinMax().getMaxPoints(), series.isDaily(), series.getZoneOffset()));
+		output.setMultipleMaxFlag(series.getMinMax().getMultipleMaxFlag());
+		output.setMinPoints(getExtremesPoints(series.getMinMax().getMinPoints(), series.isDaily(), series.getZoneOffset()));
+		output.setMultipleMinFlag(series.getMinMax().getMultipleMinFlag());
+		output.setQualifiers(getExtremesQualifiers(series.getQualifiers(), series.isDaily(), series.getZoneOffset()));
 	}
 
 	protected List<ExtremesPoint> getExtremesPoints(List<TimeSeriesPoint> points, Boolean isDaily, ZoneOffset zoneOffset) {
@@ -188,18 +538,59 @@ public class ReportBuilderService {
 		return new ArrayList<>();
 	}
 	
+	/**
+	 * Looks up the name of the primary series location through the location cache.
+	 */
+	protected CompletableFuture<String> lookupStationName(TimeSeriesDescription primarySeriesDescription) {
+		return CompletableFuture.completedFuture(primarySeriesDescription)
+			.thenCompose(d -> locationDescriptionCache.get(d.getLocationIdentifier()))
+			.thenApply(l -> l.getName());
+	}
+
+	/**
+	 * Looks up the metadata of the given qualifiers through the qualifier metadata cache, on the
+	 * given executor. Completes with null,
+	 * without a lookup, when there are no qualifiers.
+	 */
+	protected CompletableFuture<Map<String, QualifierMetadata>> lookupQualifierMetadata(List<Qualifier> qualifierList, Executor executor) {
+		if(qualifierList == null || qualifierList.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.supplyAsync(() -> qualifierMetadataCache.getByQualifierList(qualifierList), executor);
+	}
+
 	protected ExtremesReportMetadata getReportMetadata(ExtremesRequestParameters requestParameters, 
 			Map<String, TimeSeriesDescription> timeSeriesDescriptions,
 			TimeSeriesDescription primarySeriesDescription,
 			String requestingUser, 
 			List<Qualifier> qualifierList) {
+		// The qualifier lookup runs on the calling thread
+		return getReportMetadata(requestParameters,
+			timeSeriesDescriptions,
+			primarySeriesDescription,
+			requestingUser,
+			lookupStationName(primarySeriesDescription),
+			Arrays.asList(lookupQualifierMetadata(qualifierList, Runnable::run))
+		);
+	}
+
+	/**
+	 * Builds the report metadata from lookups that were started earlier, waiting on them as
+	 * their values are needed.
+	 */
+	protected ExtremesReportMetadata getReportMetadata(ExtremesRequestParameters requestParameters, 
+			Map<String, TimeSeriesDescription> timeSeriesDescriptions,
+			TimeSeriesDescription primarySeriesDescription,
+			String requestingUser, 
+			CompletableFuture<String> stationName,
+			List<CompletableFuture<Map<String, QualifierMetadata>>> qualifierMetadata) {
 		ExtremesReportMetadata metadata = new ExtremesReportMetadata();
 		try {
 			metadata.setTitle(REPORT_TITLE);
 			metadata.setRequestingUser(requestingUser);
 			metadata.setRequestParameters(requestParameters);
 			metadata.setStationId(primarySeriesDescription.getLocationIdentifier());
-			metadata.setStationName(locationDescriptionListService.getByLocationIdentifier(primarySeriesDescription.getLocationIdentifier()).getName());
+			metadata.setStationName(await(stationName));
 			metadata.setPrimaryParameter(primarySeriesDescription.getParameter());
 			metadata.setPrimaryUnit(primarySeriesDescription.getUnit());
 			metadata.setPrimaryLabel(primarySeriesDescription.getIdentifier());
@@ -225,27 +616,22 @@ public class ReportBuilderService {
 						timeSeriesDescriptions.get(requestParameters.getUpchainTimeseriesIdentifier()).getUnit());
 			}
 			
-			if(qualifierList != null && !qualifierList.isEmpty()) {
-				metadata.setQualifierMetadata(qualifierLookupService.getByQualifierList(qualifierList));
+			Map<String, QualifierMetadata> qualifierMetadataMap = null;
+			for(CompletableFuture<Map<String, QualifierMetadata>> seriesQualifierMetadata : qualifierMetadata) {
+				Map<String, QualifierMetadata> seriesMetadata = await(seriesQualifierMetadata);
+				if(seriesMetadata != null) {
+					if(qualifierMetadataMap == null) {
+						qualifierMetadataMap = new HashMap<>();
+					}
+					qualifierMetadataMap.putAll(seriesMetadata);
+				}
+			}
+			if(qualifierMetadataMap != null) {
+				metadata.setQualifierMetadata(qualifierMetadataMap);
 			}
 		} catch (Exception e) {
 			log.error("Exception in getReportMetadata: ", e.getMessage());
 		}
 		return metadata;
 	}
-	
-	protected Boolean getMultipleMinMaxFlag(TimeSeriesPoint extremePoint, List<TimeSeriesPoint> points) {
-		boolean multipleMinMax = false;
-		
-		List<TimeSeriesPoint> multipleMinMaxPoints = points.stream()
-				.filter(p -> p.getValue().getDisplay().equals(extremePoint.getValue().getDisplay())
-						&& p.getTimestamp().DateTimeOffset.compareTo(extremePoint.getTimestamp().DateTimeOffset) != 0)
-				.collect(Collectors.toList());
-		
-		if (multipleMinMaxPoints.size() > 0) {
-			multipleMinMax = true;
-		}
-		
-		return multipleMinMax;
-	}
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package gov.usgs.aqcu.builder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.QualifierMetadata;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDescription;
+
+import gov.usgs.aqcu.model.ExtremesMinMax;
+
+/**
+ * The parts of a report that depend only on its series and period, shared by every request
+ * for them. The station name and qualifier metadata lookups may still be running.
+ */
+class ReportData {
+	private final ExtremesMinMax primary;
+	private final ExtremesMinMax upchain;
+	private final ExtremesMinMax dv;
+	private final Map<String, TimeSeriesDescription> timeSeriesDescriptions;
+	private final TimeSeriesDescription primaryDescription;
+	private final CompletableFuture<String> stationName;
+	private final List<CompletableFuture<Map<String, QualifierMetadata>>> qualifierMetadata;
+
+	ReportData(ExtremesMinMax primary, ExtremesMinMax upchain, ExtremesMinMax dv,
+			Map<String, TimeSeriesDescription> timeSeriesDescriptions, TimeSeriesDescription primaryDescription,
+			CompletableFuture<String> stationName, List<CompletableFuture<Map<String, QualifierMetadata>>> qualifierMetadata) {
+		this.primary = primary;
+		this.upchain = upchain;
+		this.dv = dv;
+		this.timeSeriesDescriptions = timeSeriesDescriptions;
+		this.primaryDescription = primaryDescription;
+		this.stationName = stationName;
+		this.qualifierMetadata = qualifierMetadata;
+	}
+
+	ExtremesMinMax getPrimary() {
+		return primary;
+	}
+
+	ExtremesMinMax getUpchain() {
+		return upchain;
+	}
+
+	ExtremesMinMax getDv() {
+		return dv;
+	}
+
+	Map<String, TimeSeriesDescription> getTimeSeriesDescriptions() {
+		return timeSeriesDescriptions;
+	}
+
+	TimeSeriesDescription getPrimaryDescription() {
+		return primaryDescription;
+	}
+
+	CompletableFuture<String> getStationName() {
+		return stationName;
+	}
+
+	List<CompletableFuture<Map<String, QualifierMetadata>>> getQualifierMetadata() {
+		return qualifierMetadata;
+	}
+}
@@ -0,0 +1,151 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+
+/**
+ * What the report keeps of one fetched series: its points in columns, their min/max points, the
+ * series qualifiers and the approvals, which decide how long the series is cached.
+ *
+ * The watermark of the data is the time of its latest point together with an AQUARIUS change
+ * token from before it was fetched, and is what lets points appended later be added without
+ * fetching the rest again. The token is null for a series approved over its whole period.
+ *
+ * A series loaded from the daily summaries of the DailyExtremesStore only has the points of the
+ * days it fetched in its columns; the summarized days are listed as segments without points.
+ * The points of summarized days fetched later, to look up related points in, are kept with the
+ * series for the reports that reuse it. They are few days and not weighed by the cache.
+ */
+class SeriesExtremes {
+	private final ZoneOffset zoneOffset;
+	private final Boolean isDaily;
+	private final TimeSeriesColumns columns;
+	private final TimeSeriesMinMax minMax;
+	private final List<Qualifier> qualifiers;
+	private final List<Approval> approvals;
+	private final Instant changesSinceToken;
+	private final List<SeriesSegment> summarizedDays;
+	private final ConcurrentMap<LocalDate, TimeSeriesColumns> fetchedSummarizedDays;
+	private volatile long validatedAt;
+
+	SeriesExtremes(ZoneOffset zoneOffset, Boolean isDaily, TimeSeriesColumns columns, TimeSeriesMinMax minMax, List<Qualifier> qualifiers, 
+			List<Approval> approvals, Instant changesSinceToken) {
+		this(zoneOffset, isDaily, columns, minMax, qualifiers, approvals, changesSinceToken, new ArrayList<>());
+	}
+
+	SeriesExtremes(ZoneOffset zoneOffset, Boolean isDaily, TimeSeriesColumns columns, TimeSeriesMinMax minMax, List<Qualifier> qualifiers, 
+			List<Approval> approvals, Instant changesSinceToken, List<SeriesSegment> summarizedDays) {
+		this(zoneOffset, isDaily, columns, minMax, qualifiers, approvals, changesSinceToken, summarizedDays, new ConcurrentHashMap<>());
+	}
+
+	private SeriesExtremes(ZoneOffset zoneOffset, Boolean isDaily, TimeSeriesColumns columns, TimeSeriesMinMax minMax, List<Qualifier> qualifiers, 
+			List<Approval> approvals, Instant changesSinceToken, List<SeriesSegment> summarizedDays, 
+			ConcurrentMap<LocalDate, TimeSeriesColumns> fetchedSummarizedDays) {
+		this.zoneOffset = zoneOffset;
+		this.isDaily = isDaily;
+		this.columns = columns;
+		this.minMax = minMax;
+		this.qualifiers = qualifiers;
+		this.approvals = approvals;
+		this.changesSinceToken = changesSinceToken;
+		this.summarizedDays = summarizedDays;
+		this.fetchedSummarizedDays = fetchedSummarizedDays;
+	}
+
+	ZoneOffset getZoneOffset() {
+		return zoneOffset;
+	}
+
+	Boolean isDaily() {
+		return isDaily;
+	}
+
+	TimeSeriesColumns getColumns() {
+		return columns;
+	}
+
+	TimeSeriesMinMax getMinMax() {
+		return minMax;
+	}
+
+	List<Qualifier> getQualifiers() {
+		return qualifiers;
+	}
+
+	List<Approval> getApprovals() {
+		return approvals;
+	}
+
+	Instant getChangesSinceToken() {
+		return changesSinceToken;
+	}
+
+	boolean isSummarized() {
+		return !summarizedDays.isEmpty();
+	}
+
+	/**
+	 * The summarized days, without points in the columns, that a point at one of the given times
+	 * could fall on. A time at midnight could be the end of the day before.
+	 */
+	List<LocalDate> getSummarizedDates(Collection<Instant> times) {
+		TreeSet<LocalDate> result = new TreeSet<>();
+		for(Instant time : times) {
+			for(LocalDate date : new LocalDate[] { time.minusNanos(1).atOffset(zoneOffset).toLocalDate(), time.atOffset(zoneOffset).toLocalDate() }) {
+				if(summarizedDays.stream().anyMatch(s -> !date.isBefore(s.getStartDate()) && !date.isAfter(s.getEndDate()))) {
+					result.add(date);
+				}
+			}
+		}
+		return new ArrayList<>(result);
+	}
+
+	/**
+	 * The points of a summarized day fetched since the series was loaded, or null when the day
+	 * has not been fetched.
+	 */
+	TimeSeriesColumns getFetchedSummarizedDay(LocalDate date) {
+		return fetchedSummarizedDays.get(date);
+	}
+
+	void putFetchedSummarizedDay(LocalDate date, TimeSeriesColumns columns) {
+		fetchedSummarizedDays.put(date, columns);
+	}
+
+	/**
+	 * The cache ticker time at which the data was last fetched or confirmed unchanged.
+	 */
+	long getValidatedAt() {
+		return validatedAt;
+	}
+
+	void setValidatedAt(long validatedAt) {
+		this.validatedAt = validatedAt;
+	}
+
+	/**
+	 * Whether this holds the same data as the other series, as one confirmed unchanged does.
+	 */
+	boolean hasSameData(SeriesExtremes other) {
+		return columns == other.columns && minMax == other.minMax && qualifiers == other.qualifiers && approvals == other.approvals;
+	}
+
+	/**
+	 * The same data, confirmed unchanged as of a newer change token.
+	 */
+	SeriesExtremes withChangesSinceToken(Instant token) {
+		return new SeriesExtremes(zoneOffset, isDaily, columns, minMax, qualifiers, approvals, token, summarizedDays, fetchedSummarizedDays);
+	}
+}
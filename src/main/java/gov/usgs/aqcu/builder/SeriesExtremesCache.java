@@ -0,0 +1,358 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps fetched series, reduced to their columns, min/max points and qualifiers, across report
+ * requests so that a report followed by its raw data for the same parameters only goes to
+ * AQUARIUS once. The cache is bounded by the total number of points held.
+ *
+ * How long a series is kept depends on its approvals. Approved data does not change, so a series
+ * whose requested period is entirely covered by approvals at or above the approved level is kept
+ * for the approved lifetime, or until evicted by size when that lifetime is not positive. Any
+ * other series, which may still be edited, is only used for a short fixed time after it is
+ * loaded. A provisional series with a watermark is then kept for the retain lifetime but
+ * revalidated before it is used again, which costs a change check and a fetch of any appended
+ * days instead of a fetch of the whole period; one without a watermark expires.
+ *
+ * The approved days of loaded series are also reused to assemble other periods of the same
+ * series; see getApprovedSegments().
+ *
+ * Concurrent requests for a series that is still loading share the same load, and failed or
+ * empty loads are not kept. Hit, miss and eviction counts are published as the
+ * extremes.seriesData cache metrics.
+ *
+ * The data version counts the times cached data was dropped or changed: a series evicted,
+ * expired or not kept, or revalidated into different data. It also changes once a series that is
+ * not approved passes its short lifetime, as its data may have been edited in AQUARIUS since,
+ * without waiting for a report to revalidate or expire it. A report built from the cache while
+ * the version stays the same would be built the same again; see ReportValidatorCache.
+ */
+@Component
+public class SeriesExtremesCache {
+	public static final String CACHE_NAME = "extremes.seriesData";
+
+	private final AsyncCache<SeriesKey, SeriesExtremes> cache;
+	private final ConcurrentMap<SeriesKey, CompletableFuture<SeriesExtremes>> revalidations = new ConcurrentHashMap<>();
+	private final Ticker ticker;
+	private final long provisionalNanos;
+	private final int approvedLevel;
+	private final Duration watermarkMargin;
+	private final AtomicLong dataVersion = new AtomicLong();
+	private final PriorityQueue<Long> unapprovedDeadlines = new PriorityQueue<>();
+
+	@Autowired
+	public SeriesExtremesCache(
+		MeterRegistry meterRegistry,
+		@Value("${extremes.seriesCache.maxPoints}") long maxPoints,
+		@Value("${extremes.seriesCache.ttlSeconds}") long ttlSeconds,
+		@Value("${extremes.seriesCache.approvedTtlSeconds}") long approvedTtlSeconds,
+		@Value("${extremes.seriesCache.approvedLevel}") int approvedLevel,
+		@Value("${extremes.seriesCache.watermarkRetainSeconds}") long watermarkRetainSeconds,
+		@Value("${extremes.seriesCache.watermarkMarginSeconds}") long watermarkMarginSeconds) {
+		this(meterRegistry, maxPoints, ttlSeconds, approvedTtlSeconds, approvedLevel, watermarkRetainSeconds, watermarkMarginSeconds, Ticker.systemTicker());
+	}
+
+	SeriesExtremesCache(MeterRegistry meterRegistry, long maxPoints, long ttlSeconds, long approvedTtlSeconds, int approvedLevel, 
+			long watermarkRetainSeconds, long watermarkMarginSeconds, Ticker ticker) {
+		this.ticker = ticker;
+		this.approvedLevel = approvedLevel;
+		this.watermarkMargin = Duration.ofSeconds(watermarkMarginSeconds);
+		this.provisionalNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+		long retainNanos = Math.max(provisionalNanos, Duration.ofSeconds(watermarkRetainSeconds).toNanos());
+		long approvedNanos = approvedTtlSeconds > 0 ? Duration.ofSeconds(approvedTtlSeconds).toNanos() : Long.MAX_VALUE;
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, 
+			Caffeine.newBuilder()
+				.maximumWeight(maxPoints)
+				.weigher((SeriesKey k, SeriesExtremes v) -> v.getColumns().size())
+				.expireAfter(new Expiry<SeriesKey, SeriesExtremes>() {
+					@Override
+					public long expireAfterCreate(SeriesKey key, SeriesExtremes value, long currentTime) {
+						if(isApproved(key, value.getApprovals())) {
+							return approvedNanos;
+						}
+						return value.getChangesSinceToken() != null ? retainNanos : provisionalNanos;
+					}
+
+					@Override
+					public long expireAfterUpdate(SeriesKey key, SeriesExtremes value, long currentTime, long currentDuration) {
+						return expireAfterCreate(key, value, currentTime);
+					}
+
+					@Override
+					public long expireAfterRead(SeriesKey key, SeriesExtremes value, long currentTime, long currentDuration) {
+						return currentDuration;
+					}
+				})
+				.removalListener((SeriesKey k, SeriesExtremes v, RemovalCause cause) -> {
+					// A revalidation replacing a series changes the version once it completes
+					if(cause != RemovalCause.REPLACED) {
+						dataVersion.incrementAndGet();
+					}
+				})
+				// Notifies removals before they can be seen, rather than in the background
+				.executor(Runnable::run)
+				.ticker(ticker)
+				.recordStats()
+				.<SeriesKey, SeriesExtremes>buildAsync(),
+			CACHE_NAME);
+	}
+
+	/**
+	 * Returns the cached series for the key, starting the given load when there is none. A
+	 * provisional series past its short lifetime is replaced by the given revalidation of it,
+	 * which concurrent requests for the series share.
+	 *
+	 * The load is started while the cache holds the key, so it must only hand the work to an
+	 * executor and never run it on the calling thread. A load or revalidation that cannot be
+	 * started throws, leaving the cache as it was.
+	 */
+	CompletableFuture<SeriesExtremes> get(SeriesKey key, Function<SeriesKey, CompletableFuture<SeriesExtremes>> loader,
+			BiFunction<SeriesKey, SeriesExtremes, CompletableFuture<SeriesExtremes>> revalidator) {
+		CompletableFuture<SeriesExtremes> cached = cache.get(key, (k, executor) -> validated(k, loader.apply(k), ticker.read()));
+		if(!cached.isDone() || cached.isCompletedExceptionally() || cached.join() == null || !needsRevalidation(key, cached.join())) {
+			return cached;
+		}
+
+		CompletableFuture<SeriesExtremes> revalidation = new CompletableFuture<>();
+		CompletableFuture<SeriesExtremes> running = revalidations.putIfAbsent(key, revalidation);
+		if(running != null) {
+			return running;
+		}
+		SeriesExtremes previous = cached.join();
+		CompletableFuture<SeriesExtremes> revalidated;
+		try {
+			revalidated = validated(key, revalidator.apply(key, previous), ticker.read());
+		} catch (RuntimeException e) {
+			// Not started, as when the executor is saturated, so the cached series is left as it is
+			revalidations.remove(key, revalidation);
+			revalidation.completeExceptionally(e);
+			throw e;
+		}
+		cache.put(key, revalidation);
+		revalidated.whenComplete((value, e) -> {
+			revalidations.remove(key, revalidation);
+			if(e != null || value == null || !value.hasSameData(previous)) {
+				dataVersion.incrementAndGet();
+			}
+			if(e != null) {
+				revalidation.completeExceptionally(e);
+			} else {
+				revalidation.complete(value);
+			}
+		});
+		return revalidation;
+	}
+
+	/**
+	 * The current data version, which changes whenever cached data is dropped or changed, or
+	 * may have changed in AQUARIUS.
+	 */
+	public long getDataVersion() {
+		long now = ticker.read();
+		synchronized(unapprovedDeadlines) {
+			boolean passed = false;
+			while(!unapprovedDeadlines.isEmpty() && now - unapprovedDeadlines.peek() >= 0) {
+				unapprovedDeadlines.poll();
+				passed = true;
+			}
+			if(passed) {
+				dataVersion.incrementAndGet();
+			}
+		}
+		return dataVersion.get();
+	}
+
+	/**
+	 * Whether a cached series has to be revalidated before it is used: it is not approved, has a
+	 * watermark and its short lifetime has passed.
+	 */
+	boolean needsRevalidation(SeriesKey key, SeriesExtremes value) {
+		return value.getChangesSinceToken() != null
+			&& ticker.read() - value.getValidatedAt() >= provisionalNanos
+			&& !isApproved(key, value.getApprovals());
+	}
+
+	private CompletableFuture<SeriesExtremes> validated(SeriesKey key, CompletableFuture<SeriesExtremes> load, long validatedAt) {
+		return load.thenApply(value -> {
+			if(value != null) {
+				value.setValidatedAt(validatedAt);
+				if(!isApproved(key, value.getApprovals())) {
+					synchronized(unapprovedDeadlines) {
+						unapprovedDeadlines.add(validatedAt + provisionalNanos);
+					}
+				}
+			}
+			return value;
+		});
+	}
+
+	/**
+	 * Returns the approved days of the loaded series that are the same series as the key and
+	 * share days with its period, as segments to assemble the period from. Only approved days are
+	 * reused, since any other data may have changed since it was loaded. Series that are still
+	 * loading, or were loaded from daily summaries, are left out.
+	 */
+	List<SeriesSegment> getApprovedSegments(SeriesKey key) {
+		List<SeriesSegment> result = new ArrayList<>();
+		cache.asMap().forEach((k, v) -> {
+			if(k.isSameSeries(key)
+					&& !k.getStartDate().isAfter(key.getEndDate()) 
+					&& !k.getEndDate().isBefore(key.getStartDate())
+					&& v.isDone() && !v.isCompletedExceptionally() && v.join() != null && !v.join().isSummarized()) {
+				SeriesExtremes series = v.join();
+				for(LocalDate[] approved : getApprovedDays(k, series.getApprovals())) {
+					result.add(new SeriesSegment(approved[0], approved[1], series.getColumns(), series.getQualifiers(), series.getApprovals()));
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the runs of whole days of the period of the key that the approvals at or above the
+	 * approved level cover, as [first, last] days in day order.
+	 */
+	List<LocalDate[]> getApprovedDays(SeriesKey key, List<Approval> approvals) {
+		List<LocalDate[]> result = new ArrayList<>();
+		for(Instant[] approved : getApprovedIntervals(approvals)) {
+			LocalDate startDate = approved[0] == null ? key.getStartDate() : max(firstWholeDay(approved[0], key.getZoneOffset()), key.getStartDate());
+			LocalDate endDate = approved[1] == null ? key.getEndDate() : min(lastWholeDay(approved[1], key.getZoneOffset()), key.getEndDate());
+			if(!startDate.isAfter(endDate)) {
+				result.add(new LocalDate[] { startDate, endDate });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * When the latest of the approvals at or above the approved level that cover any of the day
+	 * was applied, which changes when the day is approved again after an edit. Null when the
+	 * approvals do not say.
+	 */
+	Instant getApprovedAt(SeriesKey key, List<Approval> approvals, LocalDate date) {
+		Instant dayStart = date.atStartOfDay().toInstant(key.getZoneOffset());
+		Instant dayEnd = date.plusDays(1).atStartOfDay().toInstant(key.getZoneOffset());
+		Instant result = null;
+		for(Approval approval : approvals == null ? new ArrayList<Approval>() : approvals) {
+			if(approval.getApprovalLevel() != null && approval.getApprovalLevel() >= approvedLevel
+					&& (approval.getStartTime() == null || approval.getStartTime().isBefore(dayEnd))
+					&& (approval.getEndTime() == null || approval.getEndTime().isAfter(dayStart))
+					&& approval.getDateAppliedUtc() != null
+					&& (result == null || approval.getDateAppliedUtc().isAfter(result))) {
+				result = approval.getDateAppliedUtc();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs any pending evictions now rather than in the background.
+	 */
+	void cleanUp() {
+		cache.synchronous().cleanUp();
+	}
+
+	/**
+	 * The change token to watermark a series fetched at the given time with, or null when its
+	 * approvals cover its whole period, as it is then never revalidated and needs none. The token
+	 * is the fetch time less the watermark margin rather than one taken from AQUARIUS before the
+	 * fetch, which would cost every load a change list request; the margin allows for the clock
+	 * of AQUARIUS being behind ours, so changes made just before the fetch are listed again at the
+	 * first revalidation rather than missed. Later tokens are the ones AQUARIUS returns.
+	 */
+	Instant getChangesSinceToken(SeriesKey key, List<Approval> approvals, Instant fetchedAt) {
+		return isApproved(key, approvals) ? null : fetchedAt.minus(watermarkMargin);
+	}
+
+	/**
+	 * Whether the whole requested period of the series is covered, without gaps, by approvals
+	 * at or above the approved level.
+	 */
+	boolean isApproved(SeriesKey key, List<Approval> approvals) {
+		for(Instant[] approved : getApprovedIntervals(approvals)) {
+			if((approved[0] == null || !approved[0].isAfter(key.getStartTime()))
+					&& (approved[1] == null || !approved[1].isBefore(key.getEndTime()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Merges the approvals at or above the approved level into contiguous [start, end] intervals,
+	 * in time order. A null start or end is open.
+	 */
+	List<Instant[]> getApprovedIntervals(List<Approval> approvals) {
+		List<Instant[]> result = new ArrayList<>();
+		if(approvals == null) {
+			return result;
+		}
+
+		List<Approval> sorted = approvals.stream()
+			.filter(a -> a.getApprovalLevel() != null && a.getApprovalLevel() >= approvedLevel)
+			.sorted(Comparator.comparing(Approval::getStartTime, Comparator.nullsFirst(Comparator.naturalOrder())))
+			.collect(Collectors.toList());
+		Instant[] current = null;
+		for(Approval approval : sorted) {
+			if(current != null && current[1] == null) {
+				break;
+			}
+			if(current != null && (approval.getStartTime() == null || !approval.getStartTime().isAfter(current[1]))) {
+				if(approval.getEndTime() == null || approval.getEndTime().isAfter(current[1])) {
+					current[1] = approval.getEndTime();
+				}
+			} else {
+				current = new Instant[] { approval.getStartTime(), approval.getEndTime() };
+				result.add(current);
+			}
+		}
+		return result;
+	}
+
+	// A day is approved when the approvals cover it from midnight to the following midnight
+	private static LocalDate firstWholeDay(Instant start, ZoneOffset zoneOffset) {
+		LocalDate date = start.atOffset(zoneOffset).toLocalDate();
+		return date.atStartOfDay().toInstant(zoneOffset).equals(start) ? date : date.plusDays(1);
+	}
+
+	private static LocalDate lastWholeDay(Instant end, ZoneOffset zoneOffset) {
+		return end.atOffset(zoneOffset).toLocalDate().minusDays(1);
+	}
+
+	private static LocalDate min(LocalDate a, LocalDate b) {
+		return a.isBefore(b) ? a : b;
+	}
+
+	private static LocalDate max(LocalDate a, LocalDate b) {
+		return a.isAfter(b) ? a : b;
+	}
+}
@@ -0,0 +1,96 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+/**
+ * Identifies one fetch of series data: the series, the period requested and the zone offset and
+ * daily flag the data is fetched with.
+ */
+class SeriesKey {
+	private final String uniqueId;
+	private final Instant startTime;
+	private final Instant endTime;
+	private final ZoneOffset zoneOffset;
+	private final Boolean isDaily;
+
+	SeriesKey(String uniqueId, Instant startTime, Instant endTime, ZoneOffset zoneOffset, Boolean isDaily) {
+		this.uniqueId = uniqueId;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.zoneOffset = zoneOffset;
+		this.isDaily = isDaily;
+	}
+
+	String getUniqueId() {
+		return uniqueId;
+	}
+
+	Instant getStartTime() {
+		return startTime;
+	}
+
+	Instant getEndTime() {
+		return endTime;
+	}
+
+	/**
+	 * The first day of the period in the series zone.
+	 */
+	LocalDate getStartDate() {
+		return startTime.atOffset(zoneOffset).toLocalDate();
+	}
+
+	/**
+	 * The last day of the period in the series zone.
+	 */
+	LocalDate getEndDate() {
+		return endTime.atOffset(zoneOffset).toLocalDate();
+	}
+
+	ZoneOffset getZoneOffset() {
+		return zoneOffset;
+	}
+
+	Boolean isDaily() {
+		return isDaily;
+	}
+
+	/**
+	 * Whether the other key fetches the same series with the same zone offset and daily flag,
+	 * whatever its period.
+	 */
+	boolean isSameSeries(SeriesKey other) {
+		return Objects.equals(uniqueId, other.uniqueId)
+			&& Objects.equals(zoneOffset, other.zoneOffset)
+			&& Objects.equals(isDaily, other.isDaily);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof SeriesKey)) {
+			return false;
+		}
+		SeriesKey other = (SeriesKey) obj;
+		return Objects.equals(uniqueId, other.uniqueId)
+			&& Objects.equals(startTime, other.startTime)
+			&& Objects.equals(endTime, other.endTime)
+			&& Objects.equals(zoneOffset, other.zoneOffset)
+			&& Objects.equals(isDaily, other.isDaily);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(uniqueId, startTime, endTime, zoneOffset, isDaily);
+	}
+
+	@Override
+	public String toString() {
+		return uniqueId + " [" + startTime + ", " + endTime + "] " + zoneOffset + (Boolean.TRUE.equals(isDaily) ? " daily" : "");
+	}
+}
@@ -0,0 +1,207 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+
+/**
+ * A run of days of one series that a requested period is assembled from: either days taken from
+ * a series already in the cache, or days still to be fetched. Segments are joined by slicing each
+ * to its days, so a point, qualifier or approval is only taken from the segments its time falls
+ * in.
+ */
+class SeriesSegment {
+	private final LocalDate startDate;
+	private final LocalDate endDate;
+	private final TimeSeriesColumns columns;
+	private final List<Qualifier> qualifiers;
+	private final List<Approval> approvals;
+
+	SeriesSegment(LocalDate startDate, LocalDate endDate, TimeSeriesColumns columns, List<Qualifier> qualifiers, List<Approval> approvals) {
+		this.startDate = startDate;
+		this.endDate = endDate;
+		this.columns = columns;
+		this.qualifiers = qualifiers;
+		this.approvals = approvals;
+	}
+
+	/**
+	 * Days that still have to be fetched.
+	 */
+	static SeriesSegment missing(LocalDate startDate, LocalDate endDate) {
+		return new SeriesSegment(startDate, endDate, null, null, null);
+	}
+
+	LocalDate getStartDate() {
+		return startDate;
+	}
+
+	LocalDate getEndDate() {
+		return endDate;
+	}
+
+	TimeSeriesColumns getColumns() {
+		return columns;
+	}
+
+	List<Qualifier> getQualifiers() {
+		return qualifiers;
+	}
+
+	List<Approval> getApprovals() {
+		return approvals;
+	}
+
+	boolean isLoaded() {
+		return columns != null;
+	}
+
+	/**
+	 * The points of the segment's days, which may be fewer than its columns hold.
+	 */
+	TimeSeriesColumns getDayColumns(ZoneOffset zoneOffset) {
+		return columns.slice(startDate, endDate, zoneOffset);
+	}
+
+	/**
+	 * Groups days, given in order, into segments of consecutive days still to be fetched.
+	 */
+	static List<SeriesSegment> missing(List<LocalDate> dates) {
+		List<SeriesSegment> result = new ArrayList<>();
+		LocalDate start = null;
+		LocalDate end = null;
+		for(LocalDate date : dates) {
+			if(start != null && !date.equals(end.plusDays(1))) {
+				result.add(missing(start, end));
+				start = null;
+			}
+			if(start == null) {
+				start = date;
+			}
+			end = date;
+		}
+		if(start != null) {
+			result.add(missing(start, end));
+		}
+		return result;
+	}
+
+	/**
+	 * Covers the period of the key with the given loaded segments, in day order, adding a missing
+	 * segment for each run of days none of them has. Where loaded segments overlap, the one
+	 * reaching furthest is used.
+	 */
+	static List<SeriesSegment> plan(SeriesKey key, List<SeriesSegment> loaded) {
+		List<SeriesSegment> result = new ArrayList<>();
+		LocalDate day = key.getStartDate();
+		while(!day.isAfter(key.getEndDate())) {
+			SeriesSegment covering = null;
+			LocalDate nextStart = null;
+			for(SeriesSegment segment : loaded) {
+				if(!segment.startDate.isAfter(day) && !segment.endDate.isBefore(day)) {
+					if(covering == null || segment.endDate.isAfter(covering.endDate)) {
+						covering = segment;
+					}
+				} else if(segment.startDate.isAfter(day) && (nextStart == null || segment.startDate.isBefore(nextStart))) {
+					nextStart = segment.startDate;
+				}
+			}
+
+			LocalDate end;
+			if(covering != null) {
+				end = min(covering.endDate, key.getEndDate());
+				result.add(new SeriesSegment(day, end, covering.columns, covering.qualifiers, covering.approvals));
+			} else {
+				end = nextStart == null ? key.getEndDate() : min(nextStart.minusDays(1), key.getEndDate());
+				result.add(missing(day, end));
+			}
+			day = end.plusDays(1);
+		}
+		return result;
+	}
+
+	/**
+	 * Joins the points of loaded segments, each sliced to its days.
+	 */
+	static TimeSeriesColumns joinColumns(List<SeriesSegment> segments, ZoneOffset zoneOffset) {
+		return TimeSeriesColumns.concat(segments.stream()
+			.map(s -> s.getDayColumns(zoneOffset))
+			.collect(Collectors.toList()));
+	}
+
+	/**
+	 * Joins the qualifiers of loaded segments that apply to their days, listing a qualifier that
+	 * spans segments once.
+	 */
+	static List<Qualifier> joinQualifiers(List<SeriesSegment> segments, ZoneOffset zoneOffset) {
+		return join(segments, zoneOffset, s -> s.qualifiers, Qualifier::getStartTime, Qualifier::getEndTime,
+			q -> Arrays.asList(q.getIdentifier(), q.getStartTime(), q.getEndTime()));
+	}
+
+	/**
+	 * Joins the approvals of loaded segments that apply to their days, listing an approval that
+	 * spans segments once.
+	 */
+	static List<Approval> joinApprovals(List<SeriesSegment> segments, ZoneOffset zoneOffset) {
+		return join(segments, zoneOffset, s -> s.approvals, Approval::getStartTime, Approval::getEndTime,
+			a -> Arrays.asList(a.getApprovalLevel(), a.getStartTime(), a.getEndTime()));
+	}
+
+	/**
+	 * Adds the qualifiers or approvals fetched for days appended to a series to those it had. One
+	 * that was extended over the appended days replaces the earlier copy with the same identity.
+	 */
+	static <T> List<T> append(List<T> earlier, List<T> later, Function<T, List<Object>> identity) {
+		if(later == null || later.isEmpty()) {
+			return earlier;
+		}
+		Set<List<Object>> replaced = later.stream().map(identity).collect(Collectors.toSet());
+		List<T> result = new ArrayList<>();
+		if(earlier != null) {
+			earlier.stream().filter(e -> !replaced.contains(identity.apply(e))).forEach(result::add);
+		}
+		result.addAll(later);
+		return result;
+	}
+
+	private static <T> List<T> join(List<SeriesSegment> segments, ZoneOffset zoneOffset, Function<SeriesSegment, List<T>> list,
+			Function<T, Instant> start, Function<T, Instant> end, Function<T, List<Object>> identity) {
+		List<T> result = new ArrayList<>();
+		Set<List<Object>> added = new HashSet<>();
+		for(SeriesSegment segment : segments) {
+			if(list.apply(segment) == null) {
+				continue;
+			}
+			// The end of the last day is included, for daily values stamped at the following midnight
+			Instant segmentStart = segment.startDate.atStartOfDay().toInstant(zoneOffset);
+			Instant segmentEnd = segment.endDate.plusDays(1).atStartOfDay().toInstant(zoneOffset);
+			for(T item : list.apply(segment)) {
+				boolean overlaps = (end.apply(item) == null || !end.apply(item).isBefore(segmentStart))
+					&& (start.apply(item) == null || !start.apply(item).isAfter(segmentEnd));
+				if(overlaps && added.add(identity.apply(item))) {
+					result.add(item);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static LocalDate min(LocalDate a, LocalDate b) {
+		return a.isBefore(b) ? a : b;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + startDate + ", " + endDate + "]" + (isLoaded() ? "" : " missing");
+	}
+}
@@ -0,0 +1,274 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+/**
+ * Column oriented copy of the points of one series, built once from the
+ * TimeSeriesDataServiceResponse so the SDK point objects can be released. Timestamps are kept as
+ * primitive epoch seconds and nanoseconds, values as primitive doubles and display values in a
+ * String column, which takes a fraction of the heap of the point, timestamp, value and Instant
+ * objects per sample and lets the min/max scan run over plain arrays.
+ *
+ * Columns keep the series order. The timestamp columns also serve as the index for related
+ * point lookups, which are binary searches; AQUARIUS returns points in time order, and a sort
+ * order is only kept for series that are not.
+ *
+ * TimeSeriesPoints are only rebuilt for the points that end up in the report. Columns fetched for
+ * neighbouring periods can be sliced by day and joined without going back to the points.
+ */
+public class TimeSeriesColumns {
+	private static final TimeSeriesColumns EMPTY = new TimeSeriesColumns(0);
+
+	private final int size;
+	private final long[] epochSeconds;
+	private final int[] nanos;
+	private final BitSet endOfTimePeriod;
+	private final double[] values;
+	private final String[] displays;
+	// Points without a value object, or with no numeric value, are rare but kept as they were
+	private final BitSet missingValues = new BitSet();
+	private final BitSet missingNumerics = new BitSet();
+	private int[] timeOrder;
+
+	private TimeSeriesColumns(int size) {
+		this.size = size;
+		this.epochSeconds = new long[size];
+		this.nanos = new int[size];
+		this.endOfTimePeriod = new BitSet(size);
+		this.values = new double[size];
+		this.displays = new String[size];
+	}
+
+	public static TimeSeriesColumns of(List<TimeSeriesPoint> points) {
+		if(points == null || points.isEmpty()) {
+			return EMPTY;
+		}
+
+		TimeSeriesColumns result = new TimeSeriesColumns(points.size());
+		int i = 0;
+		for(TimeSeriesPoint point : points) {
+			Instant time = point.getTimestamp().getDateTimeOffset();
+			result.epochSeconds[i] = time.getEpochSecond();
+			result.nanos[i] = time.getNano();
+			if(Boolean.TRUE.equals(point.getTimestamp().RepresentsEndOfTimePeriod)) {
+				result.endOfTimePeriod.set(i);
+			}
+
+			DoubleWithDisplay value = point.getValue();
+			if(value == null) {
+				result.missingValues.set(i);
+				result.values[i] = Double.NaN;
+			} else {
+				result.displays[i] = value.getDisplay();
+				if(value.getNumeric() == null) {
+					result.missingNumerics.set(i);
+					result.values[i] = Double.NaN;
+				} else {
+					result.values[i] = value.getNumeric();
+				}
+			}
+
+			i++;
+		}
+		result.indexTimes();
+		return result;
+	}
+
+	/**
+	 * Joins series covering consecutive periods into one, in the order given.
+	 */
+	public static TimeSeriesColumns concat(List<TimeSeriesColumns> parts) {
+		int size = parts.stream().mapToInt(TimeSeriesColumns::size).sum();
+		if(size == 0) {
+			return EMPTY;
+		}
+
+		TimeSeriesColumns result = new TimeSeriesColumns(size);
+		int i = 0;
+		for(TimeSeriesColumns part : parts) {
+			for(int index = 0; index < part.size; index++) {
+				part.copyTo(index, result, i++);
+			}
+		}
+		result.indexTimes();
+		return result;
+	}
+
+	/**
+	 * Returns the points whose day, in the given zone, is within [startDate, endDate], keeping
+	 * their order. See getDate().
+	 */
+	public TimeSeriesColumns slice(LocalDate startDate, LocalDate endDate, ZoneOffset zoneOffset) {
+		BitSet selected = new BitSet(size);
+		for(int index = 0; index < size; index++) {
+			LocalDate date = getDate(index, zoneOffset);
+			if(!date.isBefore(startDate) && !date.isAfter(endDate)) {
+				selected.set(index);
+			}
+		}
+		return select(selected);
+	}
+
+	/**
+	 * Returns the points after the given time, keeping their order.
+	 */
+	public TimeSeriesColumns after(Instant time) {
+		BitSet selected = new BitSet(size);
+		for(int index = 0; index < size; index++) {
+			if(compare(index, time.getEpochSecond(), time.getNano()) > 0) {
+				selected.set(index);
+			}
+		}
+		return select(selected);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public Instant getTime(int index) {
+		return Instant.ofEpochSecond(epochSeconds[index], nanos[index]);
+	}
+
+	/**
+	 * The numeric value of the point, or NaN when it has none.
+	 */
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	public String getDisplay(int index) {
+		return displays[index];
+	}
+
+	/**
+	 * The day of the point in the given zone. A point that represents the end of a period, such
+	 * as a daily value stamped at the following midnight, falls on the last day of that period.
+	 */
+	public LocalDate getDate(int index, ZoneOffset zoneOffset) {
+		Instant time = getTime(index);
+		if(endOfTimePeriod.get(index)) {
+			time = time.minusNanos(1);
+		}
+		return time.atOffset(zoneOffset).toLocalDate();
+	}
+
+	/**
+	 * Rebuilds the SDK point at the given position.
+	 */
+	public TimeSeriesPoint getPoint(int index) {
+		TimeSeriesPoint point = new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(getTime(index))
+				.setRepresentsEndOfTimePeriod(endOfTimePeriod.get(index))
+			);
+		if(!missingValues.get(index)) {
+			point.setValue(new DoubleWithDisplay()
+				.setDisplay(displays[index])
+				.setNumeric(missingNumerics.get(index) ? null : values[index])
+			);
+		}
+		return point;
+	}
+
+	/**
+	 * The time of the latest point, or null when the series is empty.
+	 */
+	public Instant getLastTime() {
+		if(isEmpty()) {
+			return null;
+		}
+		return getTime(timeOrder == null ? size - 1 : timeOrder[size - 1]);
+	}
+
+	/**
+	 * Returns the position of the point at exactly the given time, or -1 when the series has none.
+	 */
+	public int indexOf(Instant time) {
+		int low = 0;
+		int high = size - 1;
+		long seconds = time.getEpochSecond();
+		int nano = time.getNano();
+
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int index = timeOrder == null ? middle : timeOrder[middle];
+			int comparison = compare(index, seconds, nano);
+			if(comparison < 0) {
+				low = middle + 1;
+			} else if(comparison > 0) {
+				high = middle - 1;
+			} else {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the point at exactly the given time, or null when the series has none.
+	 */
+	public TimeSeriesPoint get(Instant time) {
+		int index = indexOf(time);
+		return index < 0 ? null : getPoint(index);
+	}
+
+	private TimeSeriesColumns select(BitSet selected) {
+		if(selected.cardinality() == size) {
+			return this;
+		} else if(selected.isEmpty()) {
+			return EMPTY;
+		}
+
+		TimeSeriesColumns result = new TimeSeriesColumns(selected.cardinality());
+		int i = 0;
+		for(int index = selected.nextSetBit(0); index >= 0; index = selected.nextSetBit(index + 1)) {
+			copyTo(index, result, i++);
+		}
+		result.indexTimes();
+		return result;
+	}
+
+	private void copyTo(int index, TimeSeriesColumns target, int targetIndex) {
+		target.epochSeconds[targetIndex] = epochSeconds[index];
+		target.nanos[targetIndex] = nanos[index];
+		target.endOfTimePeriod.set(targetIndex, endOfTimePeriod.get(index));
+		target.values[targetIndex] = values[index];
+		target.displays[targetIndex] = displays[index];
+		target.missingValues.set(targetIndex, missingValues.get(index));
+		target.missingNumerics.set(targetIndex, missingNumerics.get(index));
+	}
+
+	/**
+	 * Keeps a sort order for the timestamp lookups when the points are not in time order.
+	 */
+	private void indexTimes() {
+		for(int i = 1; i < size; i++) {
+			if(compare(i - 1, epochSeconds[i], nanos[i]) > 0) {
+				timeOrder = IntStream.range(0, size).boxed()
+					.sorted(Comparator.comparingLong((Integer p) -> epochSeconds[p]).thenComparingInt(p -> nanos[p]))
+					.mapToInt(Integer::intValue).toArray();
+				return;
+			}
+		}
+	}
+
+	private int compare(int index, long seconds, int nano) {
+		int comparison = Long.compare(epochSeconds[index], seconds);
+		return comparison != 0 ? comparison : Integer.compare(nanos[index], nano);
+	}
+}
@@ -0,0 +1,96 @@
+package gov.usgs.aqcu.builder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDescription;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import gov.usgs.aqcu.config.ExecutorConfig;
+import gov.usgs.aqcu.retrieval.TimeSeriesDescriptionListService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Keeps time series descriptions across report requests, keyed by uniqueId. Descriptions that
+ * are not cached are fetched together in one call to TimeSeriesDescriptionListService, so a
+ * report whose series are all cached does not call it at all.
+ *
+ * A description read after refreshSeconds is reloaded in the background on the report fetch
+ * executor while the cached copy keeps being returned, and one not read for expireSeconds after
+ * loading is dropped.
+ */
+@Component
+public class TimeSeriesDescriptionCache {
+	public static final String CACHE_NAME = "extremes.timeSeriesDescriptions";
+
+	private final LoadingCache<String, TimeSeriesDescription> cache;
+
+	@Autowired
+	public TimeSeriesDescriptionCache(
+		TimeSeriesDescriptionListService timeSeriesDescriptionListService,
+		@Qualifier(ExecutorConfig.REPORT_FETCH_EXECUTOR) Executor refreshExecutor,
+		MeterRegistry meterRegistry,
+		@Value("${extremes.descriptionCache.maxSize}") long maxSize,
+		@Value("${extremes.descriptionCache.refreshSeconds}") long refreshSeconds,
+		@Value("${extremes.descriptionCache.expireSeconds}") long expireSeconds) {
+		this(timeSeriesDescriptionListService, refreshExecutor, meterRegistry, maxSize, refreshSeconds, expireSeconds, Ticker.systemTicker());
+	}
+
+	TimeSeriesDescriptionCache(TimeSeriesDescriptionListService timeSeriesDescriptionListService, Executor refreshExecutor, 
+			MeterRegistry meterRegistry, long maxSize, long refreshSeconds, long expireSeconds, Ticker ticker) {
+		this.cache = CaffeineCacheMetrics.monitor(meterRegistry, 
+			Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.refreshAfterWrite(Duration.ofSeconds(refreshSeconds))
+				.expireAfterWrite(Duration.ofSeconds(expireSeconds))
+				.executor(refreshExecutor)
+				.ticker(ticker)
+				.recordStats()
+				.build(new DescriptionLoader(timeSeriesDescriptionListService)),
+			CACHE_NAME);
+	}
+
+	/**
+	 * Returns the descriptions found for the given uniqueIds, by uniqueId.
+	 */
+	public Map<String, TimeSeriesDescription> getTimeSeriesDescriptions(Set<String> uniqueIds) {
+		return cache.getAll(uniqueIds);
+	}
+
+	private static class DescriptionLoader implements CacheLoader<String, TimeSeriesDescription> {
+		private final TimeSeriesDescriptionListService timeSeriesDescriptionListService;
+
+		DescriptionLoader(TimeSeriesDescriptionListService timeSeriesDescriptionListService) {
+			this.timeSeriesDescriptionListService = timeSeriesDescriptionListService;
+		}
+
+		@Override
+		public TimeSeriesDescription load(String uniqueId) {
+			return loadAll(Collections.singleton(uniqueId)).get(uniqueId);
+		}
+
+		@Override
+		public Map<String, TimeSeriesDescription> loadAll(Iterable<? extends String> uniqueIds) {
+			List<String> ids = new ArrayList<>();
+			uniqueIds.forEach(ids::add);
+			return timeSeriesDescriptionListService.getTimeSeriesDescriptionList(ids)
+				.stream().collect(Collectors.toMap(t -> t.getUniqueId(), Function.identity(), (a, b) -> a));
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package gov.usgs.aqcu.client;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.openfeign.support.SpringMvcContract;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+
+import feign.MethodMetadata;
+import feign.Request;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import feign.Target;
+
+/**
+ * Renders reports through the JavaToR service like JavaToRClient.render, but streaming both
+ * ways: the report JSON is sent in chunks as it is written, and the rendered report is copied to
+ * the caller's stream as it arrives, so neither is held whole in memory.
+ *
+ * The request is built by Feign itself: the mapping of JavaToRClient.render is parsed by the
+ * Spring MVC contract the Feign client uses, its template is resolved with the arguments and
+ * the Feign request interceptors are applied to it, as for the Feign client. It is sent outside
+ * of Feign, which only sends buffered bodies, but as the Hystrix command Feign would run for
+ * JavaToRClient.render, so the javaToR Hystrix timeouts, thread pool and circuit breaker still
+ * apply, along with the javaToR Feign client timeouts. Startup fails if the mapping is missing.
+ *
+ * Failures are thrown as HystrixRuntimeExceptions, as they are by the Feign client. Nothing is
+ * written to the caller's stream before the first bytes of the rendered report arrive, so a
+ * JavaToR error status or a failure before then leaves it untouched. Once the command fails,
+ * even by timing out while its thread is still copying, the stream is closed off, so nothing more
+ * is written to it after the failure is thrown and the caller can abort what was written.
+ * Requests are logged at debug level, without their bodies.
+ */
+@Component
+public class JavaToRStreamingClient {
+	private static final int CHUNK_SIZE = 8192;
+	private static final String CLIENT_NAME = "javaToR";
+	private static final String RENDER_CONFIG_KEY = "JavaToRClient#render(String,String,String)";
+
+	private Logger log = LoggerFactory.getLogger(JavaToRStreamingClient.class);
+
+	private final RestTemplate restTemplate;
+	private final List<RequestInterceptor> requestInterceptors;
+	private final HystrixCommand.Setter hystrixSetter;
+	private final Target<JavaToRClient> target;
+	private final MethodMetadata renderMetadata;
+
+	@Autowired
+	public JavaToRStreamingClient(
+		@Value("${javaToR.service.endpoint}") String endpoint,
+		@Value("${feign.client.config.javaToR.connectTimeout}") int connectTimeout,
+		@Value("${feign.client.config.javaToR.readTimeout}") int readTimeout,
+		ObjectProvider<RequestInterceptor> requestInterceptors) {
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setBufferRequestBody(false);
+		requestFactory.setChunkSize(CHUNK_SIZE);
+		requestFactory.setConnectTimeout(connectTimeout);
+		requestFactory.setReadTimeout(readTimeout);
+		this.restTemplate = new RestTemplate(requestFactory);
+		this.requestInterceptors = requestInterceptors.orderedStream().collect(Collectors.toList());
+		this.target = new Target.HardCodedTarget<>(JavaToRClient.class, CLIENT_NAME, endpoint);
+		this.renderMetadata = new SpringMvcContract().parseAndValidatateMetadata(JavaToRClient.class).stream()
+			.filter(metadata -> RENDER_CONFIG_KEY.equals(metadata.configKey()))
+			.findFirst()
+			.orElseThrow(() -> new IllegalStateException(RENDER_CONFIG_KEY + " was not found"));
+		this.hystrixSetter = HystrixCommand.Setter
+			.withGroupKey(HystrixCommandGroupKey.Factory.asKey(CLIENT_NAME))
+			.andCommandKey(HystrixCommandKey.Factory.asKey(RENDER_CONFIG_KEY));
+	}
+
+	/**
+	 * Renders a report of the given type, writing its JSON with the given body and copying the
+	 * rendered report to the output stream, which is not closed.
+	 */
+	public void render(String requestingUser, String reportType, StreamingHttpOutputMessage.Body reportJson, OutputStream outputStream) {
+		Request request = buildRequest(requestingUser, reportType);
+		HttpMethod method = HttpMethod.valueOf(request.httpMethod().name());
+		URI uri = URI.create(request.url());
+		HttpHeaders headers = new HttpHeaders();
+		for(Map.Entry<String, Collection<String>> header : request.headers().entrySet()) {
+			headers.addAll(header.getKey(), new ArrayList<>(header.getValue()));
+		}
+
+		CommandOutputStream commandOutput = new CommandOutputStream(outputStream);
+		try {
+			new HystrixCommand<Void>(hystrixSetter) {
+				@Override
+				protected Void run() {
+					long start = System.currentTimeMillis();
+					log.debug("Rendering report: {} {}", method, uri);
+					restTemplate.execute(uri, method,
+						clientRequest -> {
+							clientRequest.getHeaders().putAll(headers);
+							reportJson.writeTo(clientRequest.getBody());
+						},
+						response -> {
+							log.debug("Rendered report: {} after {} ms", response.getRawStatusCode(), System.currentTimeMillis() - start);
+							copy(response.getBody(), commandOutput);
+							return null;
+						});
+					return null;
+				}
+			}.execute();
+		} finally {
+			commandOutput.closeOff();
+		}
+	}
+
+	// The request Feign would make for JavaToRClient.render, without its body
+	private Request buildRequest(String requestingUser, String reportType) {
+		Object[] arguments = { requestingUser, reportType };
+		Map<String, Object> variables = new HashMap<>();
+		for(Map.Entry<Integer, Collection<String>> names : renderMetadata.indexToName().entrySet()) {
+			for(String name : names.getValue()) {
+				variables.put(name, arguments[names.getKey()]);
+			}
+		}
+		RequestTemplate template = RequestTemplate.from(renderMetadata.template()).resolve(variables);
+		for(RequestInterceptor interceptor : requestInterceptors) {
+			interceptor.apply(template);
+		}
+		return target.apply(template);
+	}
+
+	// Waits for the first bytes before writing anything
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int read = in.read(buffer);
+		if(read < 0) {
+			return;
+		}
+		out.write(buffer, 0, read);
+		StreamUtils.copy(in, out);
+		out.flush();
+	}
+
+	/**
+	 * The caller's stream as written by the command thread, until the caller closes it off.
+	 */
+	private static class CommandOutputStream extends FilterOutputStream {
+		private boolean closedOff;
+
+		CommandOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public synchronized void write(int b) throws IOException {
+			checkOpen();
+			out.write(b);
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			out.write(b, off, len);
+		}
+
+		@Override
+		public synchronized void flush() throws IOException {
+			checkOpen();
+			out.flush();
+		}
+
+		@Override
+		public void close() {
+			// The caller's stream is left open
+		}
+
+		synchronized void closeOff() {
+			closedOff = true;
+		}
+
+		private void checkOpen() throws IOException {
+			if(closedOff) {
+				throw new IOException("The report render command has already ended");
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package gov.usgs.aqcu.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ExecutorConfig {
+	public static final String REPORT_FETCH_EXECUTOR = "reportFetchExecutor";
+
+	@Value("${extremes.fetch.poolSize}")
+	private int fetchPoolSize;
+
+	@Value("${extremes.fetch.queueCapacity}")
+	private int fetchQueueCapacity;
+
+	/**
+	 * Runs the AQUARIUS time series fetches of a report concurrently. The pool and its queue are
+	 * bounded; once both are full a fetch is rejected rather than run on the submitting thread,
+	 * which may be holding a cache entry it is loading, and the report is answered with a 503.
+	 */
+	@Bean(name=REPORT_FETCH_EXECUTOR)
+	public ThreadPoolTaskExecutor reportFetchExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(fetchPoolSize);
+		executor.setMaxPoolSize(fetchPoolSize);
+		executor.setQueueCapacity(fetchQueueCapacity);
+		executor.setThreadNamePrefix("report-fetch-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		return executor;
+	}
+}
@@ -0,0 +1,44 @@
+package gov.usgs.aqcu.config;
+
+import java.io.IOException;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.ActionCode;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TomcatConfig {
+	/**
+	 * Closes the connection of a request that fails after its response was committed, such as a
+	 * report whose rendering fails partway through streaming. Tomcat would otherwise include the
+	 * error page in the response and end it, passing the cut short report off as a complete 200;
+	 * closed without its end, the response shows the client it is incomplete.
+	 */
+	@Bean
+	public WebServerFactoryCustomizer<TomcatServletWebServerFactory> committedErrorCustomizer() {
+		return factory -> factory.addContextValves(new CommittedErrorValve());
+	}
+
+	static class CommittedErrorValve extends ValveBase {
+		CommittedErrorValve() {
+			super(true);
+		}
+
+		@Override
+		public void invoke(Request request, Response response) throws IOException, ServletException {
+			getNext().invoke(request, response);
+			Object exception = request.getAttribute(RequestDispatcher.ERROR_EXCEPTION);
+			if(exception != null && response.isCommitted()) {
+				response.getCoyoteResponse().action(ActionCode.CLOSE_NOW, exception);
+			}
+		}
+	}
+}
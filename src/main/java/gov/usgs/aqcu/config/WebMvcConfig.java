@@ -14,6 +14,7 @@ import org.springframework.http.converter.HttpMessageConverter;
 
 import com.google.gson.Gson;
 
+import gov.usgs.aqcu.serializer.ExtremesReportTypeAdapterFactory;
 import gov.usgs.aqcu.serializer.SwaggerGsonSerializer;
 import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
 import springfox.documentation.spring.web.json.Json;
@@ -45,6 +46,7 @@ public class WebMvcConfig implements WebMvcConfigurer {
 	public Gson gson() {
 		return AqcuGsonBuilderFactory.getConfiguredGsonBuilder()
 			.registerTypeAdapter(Json.class, new SwaggerGsonSerializer())
+			.registerTypeAdapterFactory(new ExtremesReportTypeAdapterFactory())
 			.create();
 	}
 }
@@ -8,6 +8,8 @@ import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Time
 public class TimeSeriesMinMax {
     private List<TimeSeriesPoint> minPoints;
     private List<TimeSeriesPoint> maxPoints;
+    private Boolean multipleMinFlag;
+    private Boolean multipleMaxFlag;
     
     public TimeSeriesMinMax() {
         minPoints = new ArrayList<>();
@@ -29,4 +31,26 @@ public class TimeSeriesMinMax {
     public List<TimeSeriesPoint> getMinPoints() {
         return minPoints;
     }
+
+    public void setMultipleMinFlag(Boolean multipleMinFlag) {
+        this.multipleMinFlag = multipleMinFlag;
+    }
+
+    public void setMultipleMaxFlag(Boolean multipleMaxFlag) {
+        this.multipleMaxFlag = multipleMaxFlag;
+    }
+
+    /**
+     * True when another point of the series displays the same value as the first min point.
+     */
+    public Boolean getMultipleMinFlag() {
+        return multipleMinFlag;
+    }
+
+    /**
+     * True when another point of the series displays the same value as the first max point.
+     */
+    public Boolean getMultipleMaxFlag() {
+        return multipleMaxFlag;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package gov.usgs.aqcu.retrieval;
+
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIdListServiceRequest;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIdListServiceResponse;
+
+/**
+ * Lists the time series at a location that changed since a token. Each listed series carries the
+ * time of its first changed point, and the response carries the token to ask with next time.
+ */
+@Repository
+public class TimeSeriesChangeListService {
+	private static final Logger LOG = LoggerFactory.getLogger(TimeSeriesChangeListService.class);
+
+	private AquariusRetrievalService aquariusRetrievalService;
+
+	@Autowired
+	public TimeSeriesChangeListService(AquariusRetrievalService aquariusRetrievalService) {
+		this.aquariusRetrievalService = aquariusRetrievalService;
+	}
+
+	public TimeSeriesUniqueIdListServiceResponse getChangesSince(String locationIdentifier, Instant changesSinceToken) {
+		LOG.debug("Get time series changed at " + locationIdentifier + " since " + changesSinceToken);
+		TimeSeriesUniqueIdListServiceRequest request = new TimeSeriesUniqueIdListServiceRequest()
+			.setLocationIdentifier(locationIdentifier)
+			.setChangesSinceToken(changesSinceToken);
+		return aquariusRetrievalService.executePublishApiRequest(request);
+	}
+}
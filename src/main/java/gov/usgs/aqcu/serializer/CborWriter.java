@@ -0,0 +1,241 @@
+package gov.usgs.aqcu.serializer;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Writes JSON trees as CBOR (RFC 8949) instead of JSON text. A report is first serialized to a
+ * tree by the same Gson type adapters as its JSON, so it has the same structure, keys and omitted
+ * nulls. Objects and arrays are written as maps and arrays of their sizes.
+ *
+ * Values are encoded as:
+ * <ul>
+ * <li>BigDecimal values as decimal fractions (tag 4) of a base 10 exponent and an integer
+ * mantissa, e.g. 12.30 as [-2, 1230], or as integers when their scale is 0. Integers beyond
+ * 64 bits are bignums (tags 2 and 3). Other numbers are integers or float64 values, as their
+ * types are.</li>
+ * <li>Strings in the form the report adapters write Instants in, as epoch based date/times
+ * (tag 1): whole epoch seconds, or a decimal fraction of epoch seconds when they have a fraction,
+ * so no precision is lost.</li>
+ * <li>Strings in the form the report adapters write LocalDates in, as days since the epoch
+ * (tag 100).</li>
+ * <li>Other values as their JSON counterparts.</li>
+ * </ul>
+ * Only strings that an Instant or LocalDate writes back exactly are converted, so every value
+ * decodes to what its JSON holds.
+ */
+public class CborWriter implements Flushable, Closeable {
+	private static final int UNSIGNED = 0;
+	private static final int NEGATIVE = 1 << 5;
+	private static final int BYTES = 2 << 5;
+	private static final int TEXT = 3 << 5;
+	private static final int ARRAY = 4 << 5;
+	private static final int MAP = 5 << 5;
+	private static final int TAG = 6 << 5;
+	private static final int FALSE = 0xF4;
+	private static final int TRUE = 0xF5;
+	private static final int NULL = 0xF6;
+	private static final int FLOAT64 = 0xFB;
+	private static final int POSITIVE_BIGNUM_TAG = 2;
+	private static final int NEGATIVE_BIGNUM_TAG = 3;
+	private static final int EPOCH_TIME_TAG = 1;
+	private static final int DECIMAL_FRACTION_TAG = 4;
+	private static final int EPOCH_DAYS_TAG = 100;
+	private static final int NANOS_SCALE = 9;
+	private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+	private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+	private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+	private final OutputStream out;
+
+	public CborWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a JSON tree, such as one made by Gson.toJsonTree, as a CBOR data item.
+	 */
+	public void write(JsonElement element) throws IOException {
+		if(element == null || element.isJsonNull()) {
+			out.write(NULL);
+		} else if(element.isJsonObject()) {
+			JsonObject object = element.getAsJsonObject();
+			writeHeader(MAP, object.size());
+			for(Map.Entry<String, JsonElement> member : object.entrySet()) {
+				writeText(member.getKey());
+				write(member.getValue());
+			}
+		} else if(element.isJsonArray()) {
+			JsonArray array = element.getAsJsonArray();
+			writeHeader(ARRAY, array.size());
+			for(JsonElement item : array) {
+				write(item);
+			}
+		} else {
+			writePrimitive(element.getAsJsonPrimitive());
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void writePrimitive(JsonPrimitive primitive) throws IOException {
+		if(primitive.isBoolean()) {
+			out.write(primitive.getAsBoolean() ? TRUE : FALSE);
+		} else if(primitive.isNumber()) {
+			writeNumber(primitive.getAsNumber());
+		} else {
+			writeString(primitive.getAsString());
+		}
+	}
+
+	private void writeNumber(Number value) throws IOException {
+		if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			writeLong(value.longValue());
+		} else if(value instanceof Double || value instanceof Float) {
+			writeDouble(value.doubleValue());
+		} else if(value instanceof BigInteger) {
+			writeInteger((BigInteger) value);
+		} else {
+			writeDecimal(value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString()));
+		}
+	}
+
+	private void writeDecimal(BigDecimal value) throws IOException {
+		if(value.scale() == 0) {
+			writeInteger(value.unscaledValue());
+		} else {
+			writeHeader(TAG, DECIMAL_FRACTION_TAG);
+			writeHeader(ARRAY, 2);
+			writeLong(-(long) value.scale());
+			writeInteger(value.unscaledValue());
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		Instant instant = parseInstant(value);
+		LocalDate date = instant == null ? parseDate(value) : null;
+		if(instant != null) {
+			writeHeader(TAG, EPOCH_TIME_TAG);
+			if(instant.getNano() == 0) {
+				writeLong(instant.getEpochSecond());
+			} else {
+				writeDecimal(BigDecimal.valueOf(instant.getEpochSecond())
+					.add(BigDecimal.valueOf(instant.getNano(), NANOS_SCALE))
+					.stripTrailingZeros());
+			}
+		} else if(date != null) {
+			writeHeader(TAG, EPOCH_DAYS_TAG);
+			writeLong(date.toEpochDay());
+		} else {
+			writeText(value);
+		}
+	}
+
+	// Only the exact form Instant.toString writes, so nothing else is taken for a date/time
+	private static Instant parseInstant(String value) {
+		if(value.length() <= DATE_LENGTH || !value.endsWith("Z")) {
+			return null;
+		}
+		try {
+			Instant instant = Instant.parse(value);
+			return instant.toString().equals(value) ? instant : null;
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	// Only the exact form LocalDate.toString writes
+	private static LocalDate parseDate(String value) {
+		if(value.length() != DATE_LENGTH) {
+			return null;
+		}
+		try {
+			LocalDate date = LocalDate.parse(value);
+			return date.toString().equals(value) ? date : null;
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	private void writeText(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeHeader(TEXT, bytes.length);
+		out.write(bytes);
+	}
+
+	private void writeLong(long value) throws IOException {
+		if(value < 0) {
+			writeHeader(NEGATIVE, -1 - value);
+		} else {
+			writeHeader(UNSIGNED, value);
+		}
+	}
+
+	private void writeInteger(BigInteger value) throws IOException {
+		if(value.compareTo(MIN_LONG) >= 0 && value.compareTo(MAX_LONG) <= 0) {
+			writeLong(value.longValue());
+			return;
+		}
+		boolean negative = value.signum() < 0;
+		byte[] magnitude = (negative ? value.negate().subtract(BigInteger.ONE) : value).toByteArray();
+		int offset = magnitude[0] == 0 ? 1 : 0;
+		writeHeader(TAG, negative ? NEGATIVE_BIGNUM_TAG : POSITIVE_BIGNUM_TAG);
+		writeHeader(BYTES, magnitude.length - offset);
+		out.write(magnitude, offset, magnitude.length - offset);
+	}
+
+	private void writeDouble(double value) throws IOException {
+		out.write(FLOAT64);
+		writeBytes(Double.doubleToLongBits(value), 8);
+	}
+
+	/**
+	 * Writes the initial byte of a major type with its argument, in the fewest bytes.
+	 * The argument is treated as unsigned.
+	 */
+	private void writeHeader(int majorType, long argument) throws IOException {
+		if(argument >= 0 && argument < 24) {
+			out.write(majorType | (int) argument);
+		} else if(argument >= 0 && argument <= 0xFFL) {
+			out.write(majorType | 24);
+			writeBytes(argument, 1);
+		} else if(argument >= 0 && argument <= 0xFFFFL) {
+			out.write(majorType | 25);
+			writeBytes(argument, 2);
+		} else if(argument >= 0 && argument <= 0xFFFFFFFFL) {
+			out.write(majorType | 26);
+			writeBytes(argument, 4);
+		} else {
+			out.write(majorType | 27);
+			writeBytes(argument, 8);
+		}
+	}
+
+	private void writeBytes(long value, int count) throws IOException {
+		for(int i = count - 1; i >= 0; i--) {
+			out.write((int) (value >>> (i * 8)) & 0xFF);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package gov.usgs.aqcu.serializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.Temporal;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import gov.usgs.aqcu.model.ExtremesMinMax;
+import gov.usgs.aqcu.model.ExtremesPoint;
+import gov.usgs.aqcu.model.ExtremesQualifier;
+import gov.usgs.aqcu.model.ExtremesReport;
+import gov.usgs.aqcu.model.ExtremesReportMetadata;
+
+/**
+ * Streaming adapters for the extremes report model and its Temporal values. They write the
+ * same JSON as the reflective adapters did, without reflecting over the fields of every object
+ * written: fields are written in declaration order and null values are left to the writer, so
+ * they are skipped or written as the Gson instance is configured to.
+ *
+ * Instant and LocalDate values are written as their ISO-8601 strings and read back by their
+ * form, which is also how a CborWriter tells them apart. Other Temporal values, and the report
+ * metadata, which extends a framework class, are written by the adapters Gson has for them. The
+ * model classes are still read by the reflective adapters.
+ */
+public class ExtremesReportTypeAdapterFactory implements TypeAdapterFactory {
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		Class<? super T> rawType = type.getRawType();
+		if(rawType == Temporal.class) {
+			return (TypeAdapter<T>) new TemporalAdapter(gson);
+		} else if(rawType == ExtremesReport.class) {
+			return (TypeAdapter<T>) new ReportAdapter(gson, (TypeAdapter<ExtremesReport>) gson.getDelegateAdapter(this, type));
+		} else if(rawType == ExtremesMinMax.class) {
+			return (TypeAdapter<T>) new MinMaxAdapter(gson, (TypeAdapter<ExtremesMinMax>) gson.getDelegateAdapter(this, type));
+		} else if(rawType == ExtremesPoint.class) {
+			return (TypeAdapter<T>) new PointAdapter(gson, (TypeAdapter<ExtremesPoint>) gson.getDelegateAdapter(this, type));
+		} else if(rawType == ExtremesQualifier.class) {
+			return (TypeAdapter<T>) new QualifierAdapter(gson, (TypeAdapter<ExtremesQualifier>) gson.getDelegateAdapter(this, type));
+		}
+		return null;
+	}
+
+	private static <T> void writeList(JsonWriter out, List<T> values, TypeAdapter<T> adapter) throws IOException {
+		if(values == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for(T value : values) {
+			adapter.write(out, value);
+		}
+		out.endArray();
+	}
+
+	/**
+	 * Writes the model, leaving reading to the reflective adapter.
+	 */
+	private abstract static class ModelAdapter<T> extends TypeAdapter<T> {
+		private final TypeAdapter<T> reflective;
+
+		ModelAdapter(TypeAdapter<T> reflective) {
+			this.reflective = reflective;
+		}
+
+		@Override
+		public void write(JsonWriter out, T value) throws IOException {
+			if(value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeFields(out, value);
+			out.endObject();
+		}
+
+		abstract void writeFields(JsonWriter out, T value) throws IOException;
+
+		@Override
+		public T read(JsonReader in) throws IOException {
+			return reflective.read(in);
+		}
+	}
+
+	private static class ReportAdapter extends ModelAdapter<ExtremesReport> {
+		private final TypeAdapter<ExtremesReportMetadata> metadataAdapter;
+		private final TypeAdapter<ExtremesMinMax> minMaxAdapter;
+
+		ReportAdapter(Gson gson, TypeAdapter<ExtremesReport> reflective) {
+			super(reflective);
+			this.metadataAdapter = gson.getAdapter(ExtremesReportMetadata.class);
+			this.minMaxAdapter = gson.getAdapter(ExtremesMinMax.class);
+		}
+
+		@Override
+		void writeFields(JsonWriter out, ExtremesReport value) throws IOException {
+			out.name("reportMetadata");
+			metadataAdapter.write(out, value.getReportMetadata());
+			out.name("dv");
+			minMaxAdapter.write(out, value.getDv());
+			out.name("upchain");
+			minMaxAdapter.write(out, value.getUpchain());
+			out.name("primary");
+			minMaxAdapter.write(out, value.getPrimary());
+		}
+	}
+
+	private static class MinMaxAdapter extends ModelAdapter<ExtremesMinMax> {
+		private final TypeAdapter<ExtremesPoint> pointAdapter;
+		private final TypeAdapter<ExtremesQualifier> qualifierAdapter;
+
+		MinMaxAdapter(Gson gson, TypeAdapter<ExtremesMinMax> reflective) {
+			super(reflective);
+			this.pointAdapter = gson.getAdapter(ExtremesPoint.class);
+			this.qualifierAdapter = gson.getAdapter(ExtremesQualifier.class);
+		}
+
+		@Override
+		void writeFields(JsonWriter out, ExtremesMinMax value) throws IOException {
+			out.name("min");
+			writePoints(out, value.getMin());
+			out.name("multipleMinFlag");
+			out.value(value.getMultipleMinFlag());
+			out.name("max");
+			writePoints(out, value.getMax());
+			out.name("multipleMaxFlag");
+			out.value(value.getMultipleMaxFlag());
+			out.name("qualifiers");
+			writeList(out, value.getQualifiers(), qualifierAdapter);
+		}
+
+		private void writePoints(JsonWriter out, Map<String, List<ExtremesPoint>> points) throws IOException {
+			if(points == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			for(Map.Entry<String, List<ExtremesPoint>> entry : points.entrySet()) {
+				out.name(String.valueOf(entry.getKey()));
+				writeList(out, entry.getValue(), pointAdapter);
+			}
+			out.endObject();
+		}
+	}
+
+	private static class PointAdapter extends ModelAdapter<ExtremesPoint> {
+		private final TypeAdapter<Temporal> temporalAdapter;
+
+		PointAdapter(Gson gson, TypeAdapter<ExtremesPoint> reflective) {
+			super(reflective);
+			this.temporalAdapter = gson.getAdapter(Temporal.class);
+		}
+
+		@Override
+		void writeFields(JsonWriter out, ExtremesPoint value) throws IOException {
+			out.name("time");
+			temporalAdapter.write(out, value.getTime());
+			out.name("value");
+			out.value(value.getValue());
+		}
+	}
+
+	private static class QualifierAdapter extends ModelAdapter<ExtremesQualifier> {
+		private final TypeAdapter<Temporal> temporalAdapter;
+
+		QualifierAdapter(Gson gson, TypeAdapter<ExtremesQualifier> reflective) {
+			super(reflective);
+			this.temporalAdapter = gson.getAdapter(Temporal.class);
+		}
+
+		@Override
+		void writeFields(JsonWriter out, ExtremesQualifier value) throws IOException {
+			out.name("identifier");
+			out.value(value.getIdentifier());
+			out.name("startTime");
+			temporalAdapter.write(out, value.getStartTime());
+			out.name("endTime");
+			temporalAdapter.write(out, value.getEndTime());
+		}
+	}
+
+	private static class TemporalAdapter extends TypeAdapter<Temporal> {
+		private static final int DATE_LENGTH = "yyyy-MM-dd".length();
+
+		private final Gson gson;
+
+		TemporalAdapter(Gson gson) {
+			this.gson = gson;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void write(JsonWriter out, Temporal value) throws IOException {
+			if(value == null) {
+				out.nullValue();
+			} else if(value instanceof Instant || value instanceof LocalDate) {
+				out.value(value.toString());
+			} else {
+				((TypeAdapter<Temporal>) gson.getAdapter(value.getClass())).write(out, value);
+			}
+		}
+
+		@Override
+		public Temporal read(JsonReader in) throws IOException {
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String value = in.nextString();
+			return value.length() == DATE_LENGTH ? LocalDate.parse(value) : Instant.parse(value);
+		}
+	}
+}
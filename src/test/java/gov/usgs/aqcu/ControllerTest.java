@@ -1,26 +1,48 @@
 package gov.usgs.aqcu;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.stubbing.Answer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
 import com.google.gson.Gson;
 
 import gov.usgs.aqcu.builder.ReportBuilderService;
-import gov.usgs.aqcu.client.JavaToRClient;
+import gov.usgs.aqcu.builder.SeriesExtremesCache;
+import gov.usgs.aqcu.client.JavaToRStreamingClient;
 import gov.usgs.aqcu.model.ExtremesReport;
 import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
 import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @RunWith(SpringRunner.class)
 @ActiveProfiles("test")
@@ -28,7 +50,9 @@ public class ControllerTest {
 	@MockBean
 	private ReportBuilderService reportBuilderService;
 	@MockBean
-	private JavaToRClient client;
+	private JavaToRStreamingClient client;
+	@MockBean
+	private SeriesExtremesCache seriesExtremesCache;
 
 	private Gson gson;
 	private Controller controller;
@@ -40,7 +64,8 @@ public class ControllerTest {
 	public void setup() {
 		gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().create();
 		report = new ExtremesReport();
-		controller = new Controller(reportBuilderService, client, gson);
+		controller = new Controller(reportBuilderService, client, gson, 
+			new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 600));
 		resultBytes = gson.toJson(report).getBytes();
 	}
 
@@ -48,26 +73,197 @@ public class ControllerTest {
 	public void getReportTest() throws Exception {
 		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
 			.willReturn(report);
-		given(client.render(any(String.class), any(String.class), any(String.class)))
-			.willReturn(resultBytes);
-		
-		ResponseEntity<?> result = controller.getReport(new ExtremesRequestParameters());
-		assertEquals(result.getBody(), resultBytes);
-		assertEquals(result.getStatusCode(), HttpStatus.OK);
+		ByteArrayOutputStream reportJson = new ByteArrayOutputStream();
+		willAnswer(render(reportJson)).given(client)
+			.render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReport(new ExtremesRequestParameters(), null, result);
+		assertArrayEquals(result.getContentAsByteArray(), resultBytes);
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getContentType(), "text/html");
+		assertEquals(reportJson.toString("UTF-8"), gson.toJson(report));
+		verify(client).render(eq(Controller.UNKNOWN_USERNAME), eq("extremes"), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+	}
+
+	@Test
+	public void getReportNotModifiedTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+		willAnswer(render(new ByteArrayOutputStream())).given(client)
+			.render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReport(new ExtremesRequestParameters(), null, result);
+		String eTag = result.getHeader(HttpHeaders.ETAG);
+		result = new MockHttpServletResponse();
+		controller.getReport(new ExtremesRequestParameters(), eTag, result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		assertEquals(result.getHeader(HttpHeaders.ETAG), eTag);
+		assertEquals(result.getContentAsByteArray().length, 0);
+		verify(reportBuilderService, times(1)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+		verify(client, times(1)).render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+	}
+
+	@Test
+	public void getReportNotModifiedWithoutValidatorTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+		willAnswer(render(new ByteArrayOutputStream())).given(client)
+			.render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReport(new ExtremesRequestParameters(), null, result);
+		String eTag = result.getHeader(HttpHeaders.ETAG);
+		Controller restarted = new Controller(reportBuilderService, client, gson, 
+			new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 600));
+		result = new MockHttpServletResponse();
+		restarted.getReport(new ExtremesRequestParameters(), eTag.substring(2), result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		assertEquals(result.getHeader(HttpHeaders.ETAG), eTag);
+		verify(reportBuilderService, times(2)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+		verify(client, times(1)).render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+	}
+
+	@Test
+	public void getReportRenderFailureTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+		willThrow(new IllegalStateException("JavaToR failed")).given(client)
+			.render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		try {
+			controller.getReport(new ExtremesRequestParameters(), null, result);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertNull(result.getHeader(HttpHeaders.ETAG));
+		}
+
+		// The ETag of the failed response was not remembered, so the report is built again
+		String eTag = new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 600).computeETag(Controller.HTML_REPRESENTATION, report);
+		result = new MockHttpServletResponse();
+		controller.getReport(new ExtremesRequestParameters(), eTag, result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		verify(reportBuilderService, times(2)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+	}
+
+	@Test
+	public void handleRejectedFetchTest() throws Exception {
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.handleRejectedFetch(result);
+		assertEquals(result.getHeader(HttpHeaders.RETRY_AFTER), "1");
+		assertEquals(Controller.class.getMethod("handleRejectedFetch", HttpServletResponse.class).getAnnotation(ResponseStatus.class).value(), 
+			HttpStatus.SERVICE_UNAVAILABLE);
 	}
 
 	@Test
 	public void getReportRawDataTest() throws Exception {
 		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
 			.willReturn(report);
-		ResponseEntity<?> result = controller.getReportRawData(new ExtremesRequestParameters());
-		assertEquals(result.getBody(), gson.toJson(report));
-		assertEquals(result.getStatusCode(), HttpStatus.OK);
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), null, null, result);
+		assertEquals(result.getContentAsString(), gson.toJson(report));
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getContentType(), "application/json");
+		assertEquals(result.getCharacterEncoding(), "UTF-8");
+		assertEquals(result.getHeader(HttpHeaders.ETAG), 
+			new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 600).computeETag(Controller.JSON_REPRESENTATION, gson.toJson(report)));
+	}
+
+	@Test
+	public void getReportRawDataNotModifiedTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), null, null, result);
+		String eTag = result.getHeader(HttpHeaders.ETAG);
+		result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), "\"other\", " + eTag, null, result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		assertEquals(result.getContentLength(), 0);
+		verify(reportBuilderService, times(1)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+
+		result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), "\"other\"", null, result);
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getHeader(HttpHeaders.ETAG), eTag);
+		verify(reportBuilderService, times(2)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+
+		// Cached series changed since, so the report is built again to compare with
+		given(seriesExtremesCache.getDataVersion()).willReturn(1L);
+		result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), eTag, null, result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		verify(reportBuilderService, times(3)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+		verify(client, never()).render(any(String.class), any(String.class), any(StreamingHttpOutputMessage.Body.class), any(OutputStream.class));
+	}
+
+	@Test
+	public void getReportRawDataCborTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), null, "application/json;q=0.5, application/cbor", result);
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getContentType(), "application/cbor");
+		assertEquals(result.getHeader(HttpHeaders.VARY), HttpHeaders.ACCEPT);
+		// An empty report is an empty map
+		assertArrayEquals(result.getContentAsByteArray(), new byte[] { (byte) 0xA0 });
+		String cborETag = result.getHeader(HttpHeaders.ETAG);
+		assertTrue(cborETag.startsWith("W/\"" + Controller.CBOR_REPRESENTATION + "-"));
+
+		// Each representation is validated on its own
+		result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), cborETag, null, result);
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getContentType(), "application/json");
+		result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), cborETag, "application/cbor", result);
+		assertEquals(result.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		verify(reportBuilderService, times(2)).buildReport(any(ExtremesRequestParameters.class), any(String.class));
+	}
+
+	@Test
+	public void getRawDataMediaTypeTest() {
+		assertEquals(Controller.getRawDataMediaType(null), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType(""), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType("*/*"), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType("application/*"), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType("application/cbor"), MediaType.APPLICATION_CBOR);
+		assertEquals(Controller.getRawDataMediaType("application/cbor, */*;q=0.1"), MediaType.APPLICATION_CBOR);
+		assertEquals(Controller.getRawDataMediaType("application/cbor;q=0.2, application/json"), MediaType.APPLICATION_JSON);
+
+		// Malformed headers
+		assertEquals(Controller.getRawDataMediaType("application/cbor;q=x"), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType("not a type"), MediaType.APPLICATION_JSON);
+		assertEquals(Controller.getRawDataMediaType("application/cbor, /json"), MediaType.APPLICATION_JSON);
+	}
+
+	@Test
+	public void getReportRawDataMalformedAcceptTest() throws Exception {
+		given(reportBuilderService.buildReport(any(ExtremesRequestParameters.class), any(String.class)))
+			.willReturn(report);
+		MockHttpServletResponse result = new MockHttpServletResponse();
+		controller.getReportRawData(new ExtremesRequestParameters(), null, "application/cbor;q=x", result);
+		assertEquals(result.getStatus(), HttpStatus.OK.value());
+		assertEquals(result.getContentType(), "application/json");
+		assertEquals(result.getContentAsString(), gson.toJson(report));
+	}
+
+	// Writes the report JSON to the given stream and the rendered report to the response
+	private Answer<Void> render(OutputStream reportJson) {
+		return invocation -> {
+			invocation.<StreamingHttpOutputMessage.Body>getArgument(2).writeTo(reportJson);
+			invocation.<OutputStream>getArgument(3).write(resultBytes);
+			return null;
+		};
 	}
 
 	@Test
 	public void getRequestingUserTest() {
-		Controller c = new Controller(null, null, null);
+		Controller c = new Controller(null, null, null, null);
 		assertEquals(Controller.UNKNOWN_USERNAME, c.getRequestingUser());
 	}
 }
@@ -0,0 +1,102 @@
+package gov.usgs.aqcu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import gov.usgs.aqcu.builder.SeriesExtremesCache;
+import gov.usgs.aqcu.model.ExtremesReport;
+import gov.usgs.aqcu.model.ExtremesReportMetadata;
+import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
+import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ReportValidatorCacheTest {
+	private SeriesExtremesCache seriesExtremesCache;
+	private ReportValidatorCache cache;
+	private ExtremesRequestParameters params;
+
+	@Before
+	public void setup() {
+		Gson gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().create();
+		seriesExtremesCache = mock(SeriesExtremesCache.class);
+		cache = new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 600);
+		params = new ExtremesRequestParameters();
+		params.setPrimaryTimeseriesIdentifier("primary");
+		params.setStartDate(LocalDate.parse("2017-01-01"));
+		params.setEndDate(LocalDate.parse("2017-02-01"));
+	}
+
+	@Test
+	public void computeETagTest() {
+		String eTag = cache.computeETag("json", "{}");
+		assertEquals(cache.computeETag("json", "{}"), eTag);
+		assertTrue(eTag.startsWith("W/\"json-") && eTag.endsWith("\""));
+		assertFalse(cache.computeETag("json", "{ }").equals(eTag));
+		assertFalse(cache.computeETag("html", "{}").equals(eTag));
+
+		// Computing an ETag does not remember it
+		assertNull(cache.getETag("json", params, "user"));
+		cache.putETag("json", params, "user", eTag, 0);
+		assertEquals(cache.getETag("json", params, "user"), eTag);
+	}
+
+	@Test
+	public void computeETagStreamedTest() throws Exception {
+		Gson gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().create();
+		ExtremesReport report = new ExtremesReport();
+		report.setReportMetadata(new ExtremesReportMetadata());
+		report.getReportMetadata().setRequestParameters(params);
+		report.getReportMetadata().setStationName("Station \u00e9 <name>");
+		assertEquals(cache.computeETag("json", report), cache.computeETag("json", gson.toJson(report)));
+	}
+
+	@Test
+	public void getETagPerRequestTest() {
+		String eTag = cache.computeETag("json", "{}");
+		cache.putETag("json", params, "user", eTag, 0);
+		assertNull(cache.getETag("html", params, "user"));
+		assertNull(cache.getETag("json", params, "other"));
+		params.setEndDate(LocalDate.parse("2017-03-01"));
+		assertNull(cache.getETag("json", params, "user"));
+		params.setEndDate(LocalDate.parse("2017-02-01"));
+		assertEquals(cache.getETag("json", params, "user"), eTag);
+	}
+
+	@Test
+	public void getETagDataVersionTest() {
+		given(seriesExtremesCache.getDataVersion()).willReturn(3L);
+		assertEquals(cache.getDataVersion(), 3L);
+		cache.putETag("json", params, "user", "\"json-1\"", 3L);
+		assertEquals(cache.getETag("json", params, "user"), "\"json-1\"");
+
+		// Cached series dropped or changed since the report was built
+		given(seriesExtremesCache.getDataVersion()).willReturn(4L);
+		assertNull(cache.getETag("json", params, "user"));
+
+		// Built while cached series changed
+		cache.putETag("json", params, "user", "\"json-2\"", 3L);
+		assertNull(cache.getETag("json", params, "user"));
+	}
+
+	@Test
+	public void matchesTest() {
+		assertTrue(ReportValidatorCache.matches("\"a\"", "\"a\""));
+		assertTrue(ReportValidatorCache.matches("W/\"a\"", "\"a\""));
+		assertTrue(ReportValidatorCache.matches("\"b\", \"a\"", "\"a\""));
+		assertTrue(ReportValidatorCache.matches("*", "\"a\""));
+		assertFalse(ReportValidatorCache.matches("\"b\"", "\"a\""));
+		assertFalse(ReportValidatorCache.matches(null, "\"a\""));
+		assertFalse(ReportValidatorCache.matches("\"a\"", null));
+	}
+}
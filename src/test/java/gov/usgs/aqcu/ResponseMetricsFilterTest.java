@@ -0,0 +1,66 @@
+package gov.usgs.aqcu;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.FilterChain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ResponseMetricsFilterTest {
+	private SimpleMeterRegistry meterRegistry;
+	private ResponseMetricsFilter filter;
+	private byte[] body;
+
+	@Before
+	public void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		filter = new ResponseMetricsFilter(meterRegistry);
+		body = "{\"dv\":{}}".getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void countTest() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("GET", "/extremes/rawData"), response, chain("application/json;charset=UTF-8"));
+		filter.doFilter(new MockHttpServletRequest("GET", "/extremes/rawData"), new MockHttpServletResponse(), chain("application/json"));
+		assertArrayEquals(response.getContentAsByteArray(), body);
+
+		DistributionSummary summary = meterRegistry.get(ResponseMetricsFilter.METRIC_NAME)
+			.tag("endpoint", "/extremes/rawData").tag("contentType", "application/json").summary();
+		assertEquals(summary.count(), 2L);
+		assertEquals(summary.totalAmount(), body.length * 2D, 0D);
+		assertEquals(meterRegistry.get(ResponseMetricsFilter.METRIC_NAME).tag("endpoint", "/extremes/rawData").tag("contentType", "application/cbor").summary().count(), 0L);
+	}
+
+	@Test
+	public void otherContentTypesTest() throws Exception {
+		filter.doFilter(new MockHttpServletRequest("GET", "/extremes"), new MockHttpServletResponse(), chain("application/json"));
+		filter.doFilter(new MockHttpServletRequest("GET", "/extremes"), new MockHttpServletResponse(), chain("text/html;charset=UTF-8"));
+		assertEquals(meterRegistry.get(ResponseMetricsFilter.METRIC_NAME).tag("endpoint", "/extremes").tag("contentType", "other").summary().count(), 1L);
+		assertEquals(meterRegistry.get(ResponseMetricsFilter.METRIC_NAME).tag("endpoint", "/extremes").tag("contentType", "text/html").summary().count(), 1L);
+	}
+
+	@Test
+	public void otherPathsTest() throws Exception {
+		filter.doFilter(new MockHttpServletRequest("GET", "/swagger-ui.html"), new MockHttpServletResponse(), chain("text/html"));
+		filter.doFilter(new MockHttpServletRequest("GET", "/extremes/other"), new MockHttpServletResponse(), chain("application/json"));
+		assertEquals(meterRegistry.get(ResponseMetricsFilter.METRIC_NAME).summaries().stream().mapToLong(DistributionSummary::count).sum(), 0L);
+	}
+
+	private FilterChain chain(String contentType) {
+		return (request, response) -> {
+			response.setContentType(contentType);
+			response.getOutputStream().write(body, 0, 4);
+			response.getOutputStream().write(body, 4, body.length - 4);
+		};
+	}
+}
@@ -0,0 +1,142 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DailyExtremesStoreTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DailyExtremesStore store;
+	private SeriesKey key;
+
+	@Before
+	public void setup() throws Exception {
+		store = new DailyExtremesStore(folder.getRoot().getPath() + "/days", 10);
+		key = new SeriesKey("ts1", Instant.parse("2018-01-01T05:00:00Z"), Instant.parse("2018-02-01T04:59:59Z"), ZoneOffset.ofHours(-5), false);
+	}
+
+	@Test
+	public void isUsedForTest() {
+		assertTrue(store.isUsedFor(key));
+		assertFalse(store.isUsedFor(new SeriesKey("ts1", Instant.parse("2018-01-01T05:00:00Z"), Instant.parse("2018-01-10T04:59:59Z"), ZoneOffset.ofHours(-5), false)));
+		assertTrue(store.isUsedFor(new SeriesKey("ts1", Instant.parse("2018-01-01T05:00:00Z"), Instant.parse("2018-01-11T04:59:59Z"), ZoneOffset.ofHours(-5), false)));
+		assertFalse(new DailyExtremesStore("", 10).isUsedFor(key));
+		assertFalse(new DailyExtremesStore(null, 10).isUsedFor(key));
+	}
+
+	@Test
+	public void readWriteTest() {
+		assertTrue(store.read(key).isEmpty());
+
+		store.write(key, Arrays.asList(
+			day("2018-01-02", 3.25D, "3.2", 2),
+			new DailyExtremes(LocalDate.parse("2018-01-03"), null, null),
+			day("2018-03-01", 9.0D, "9.0", 1)
+		));
+		Map<LocalDate, DailyExtremes> result = store.read(key);
+		assertEquals(result.size(), 2);
+		assertTrue(result.get(LocalDate.parse("2018-01-03")).isEmpty());
+
+		DailyExtremes stored = result.get(LocalDate.parse("2018-01-02"));
+		assertEquals(stored.getMax().getValue(), 3.25D, 0D);
+		assertEquals(stored.getMax().getDisplayCount(), 2);
+		assertEquals(stored.getMax().getPoints().size(), 1);
+		TimeSeriesPoint point = stored.getMax().getPoints().get(0);
+		assertEquals(point.getTimestamp().getDateTimeOffset(), Instant.parse("2018-01-02T17:00:00Z"));
+		assertEquals(point.getTimestamp().RepresentsEndOfTimePeriod, false);
+		assertEquals(point.getValue().getDisplay(), "3.2");
+		assertEquals(point.getValue().getNumeric(), 3.25D, 0D);
+
+		// Other series, zones and daily flags are stored apart
+		assertTrue(store.read(new SeriesKey("ts2", key.getStartTime(), key.getEndTime(), key.getZoneOffset(), false)).isEmpty());
+		assertTrue(store.read(new SeriesKey("ts1", key.getStartTime(), key.getEndTime(), ZoneOffset.UTC, false)).isEmpty());
+		assertTrue(store.read(new SeriesKey("ts1", key.getStartTime(), key.getEndTime(), key.getZoneOffset(), true)).isEmpty());
+	}
+
+	@Test
+	public void replaceTest() throws Exception {
+		store.write(key, Arrays.asList(day("2018-01-02", 3.0D, "3.0", 1), day("2018-01-04", 4.0D, "4.0", 1)));
+		store.write(key, Arrays.asList(day("2018-01-02", 5.0D, "5.0", 1), DailyExtremes.removed(LocalDate.parse("2018-01-04"))));
+		assertFalse(Files.exists(getSeriesDirectory().resolve("2018-01-04.json")));
+
+		// A summary without display counts, from an earlier version, is left out
+		try(Writer writer = Files.newBufferedWriter(getSeriesDirectory().resolve("2018-01-03.json"), StandardCharsets.UTF_8)) {
+			writer.write("{\"date\":\"2018-01-03\",\"max\":{\"value\":1.0,\"points\":[]},\"min\":{\"value\":1.0,\"points\":[]},\"displayCounts\":{}}");
+		}
+
+		// A file left partly written is skipped
+		try(Writer writer = Files.newBufferedWriter(getSeriesDirectory().resolve("2018-01-05.json"), StandardCharsets.UTF_8)) {
+			writer.write("{\"date\":\"2018-01-05\",\"max\":{\"val");
+		}
+
+		Map<LocalDate, DailyExtremes> result = store.read(key);
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(LocalDate.parse("2018-01-02")).getMax().getValue(), 5.0D, 0D);
+	}
+
+	@Test
+	public void changedDaysTest() throws Exception {
+		store.write(key, Arrays.asList(
+			day("2018-01-06", 6.0D, "6.0", 1).setApprovedAt(Instant.parse("2018-03-01T00:00:00Z")),
+			day("2018-01-07", 7.0D, "7.0", 1).setApprovedAt(Instant.parse("2018-03-01T00:00:00Z"))
+		));
+		Path unchanged = getSeriesDirectory().resolve("2018-01-07.json");
+		Files.setLastModifiedTime(unchanged, FileTime.from(Instant.parse("2018-03-01T00:00:00Z")));
+
+		store.write(key, Arrays.asList(day("2018-01-06", 8.0D, "8.0", 1).setApprovedAt(Instant.parse("2018-03-02T00:00:00Z"))));
+
+		// Only the file of the written day is replaced, and no temporary files are left
+		assertEquals(Files.getLastModifiedTime(unchanged), FileTime.from(Instant.parse("2018-03-01T00:00:00Z")));
+		assertEquals(Files.list(getSeriesDirectory()).count(), 2L);
+		Map<LocalDate, DailyExtremes> result = store.read(key);
+		assertEquals(result.keySet(), new TreeSet<>(Arrays.asList(LocalDate.parse("2018-01-06"), LocalDate.parse("2018-01-07"))));
+		assertEquals(result.get(LocalDate.parse("2018-01-06")).getMax().getValue(), 8.0D, 0D);
+		assertEquals(result.get(LocalDate.parse("2018-01-06")).getApprovedAt(), Instant.parse("2018-03-02T00:00:00Z"));
+		assertEquals(result.get(LocalDate.parse("2018-01-07")).getApprovedAt(), Instant.parse("2018-03-01T00:00:00Z"));
+
+		// Days outside of the period are not read
+		SeriesKey shortKey = new SeriesKey("ts1", Instant.parse("2018-01-07T05:00:00Z"), Instant.parse("2018-01-08T04:59:59Z"), ZoneOffset.ofHours(-5), false);
+		assertEquals(store.read(shortKey).keySet(), new TreeSet<>(Arrays.asList(LocalDate.parse("2018-01-07"))));
+	}
+
+	private Path getSeriesDirectory() {
+		return folder.getRoot().toPath().resolve("days").resolve("ts1_-18000");
+	}
+
+	private DailyExtremes day(String date, double value, String display, int displayCount) {
+		TimeSeriesPoint point = new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(LocalDate.parse(date).atTime(12, 0).toInstant(ZoneOffset.ofHours(-5)))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay(display)
+				.setNumeric(value)
+			);
+		DailyExtremes.Side side = new DailyExtremes.Side(value, Arrays.asList(point), displayCount);
+		return new DailyExtremes(LocalDate.parse(date), side, side);
+	}
+}
@@ -0,0 +1,86 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.LocationDescription;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.usgs.aqcu.retrieval.LocationDescriptionListService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LocationDescriptionCacheTest {
+	private LocationDescriptionListService locDescService;
+	private ExecutorService loadExecutor;
+	private LocationDescriptionCache cache;
+
+	@Before
+	public void setup() {
+		locDescService = mock(LocationDescriptionListService.class);
+		loadExecutor = Executors.newFixedThreadPool(2);
+		cache = new LocationDescriptionCache(locDescService, loadExecutor, new SimpleMeterRegistry(), 100, 86400);
+	}
+
+	@After
+	public void tearDown() {
+		loadExecutor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentMissTest() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		given(locDescService.getByLocationIdentifier("loc1")).willAnswer(invocation -> {
+			assertTrue(release.await(10, TimeUnit.SECONDS));
+			return new LocationDescription().setIdentifier("loc1").setName("Location 1");
+		});
+
+		CompletableFuture<LocationDescription> first = cache.get("loc1");
+		CompletableFuture<LocationDescription> second = cache.get("loc1");
+		release.countDown();
+		assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+		assertEquals(cache.get("loc1").get(10, TimeUnit.SECONDS).getName(), "Location 1");
+		verify(locDescService, times(1)).getByLocationIdentifier("loc1");
+	}
+
+	@Test
+	public void reloadTest() throws Exception {
+		given(locDescService.getByLocationIdentifier("loc1")).willReturn(
+			new LocationDescription().setIdentifier("loc1").setName("Location 1"),
+			new LocationDescription().setIdentifier("loc1").setName("Renamed Location 1")
+		);
+		assertEquals(cache.get("loc1").get(10, TimeUnit.SECONDS).getName(), "Location 1");
+
+		cache.reload();
+		verify(locDescService, timeout(10000).times(2)).getByLocationIdentifier("loc1");
+		for(int i = 0; i < 100 && !"Renamed Location 1".equals(cache.get("loc1").get(10, TimeUnit.SECONDS).getName()); i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(cache.get("loc1").get(10, TimeUnit.SECONDS).getName(), "Renamed Location 1");
+	}
+
+	@Test
+	public void notFoundNotCachedTest() throws Exception {
+		given(locDescService.getByLocationIdentifier("loc1")).willReturn(
+			null,
+			new LocationDescription().setIdentifier("loc1").setName("Location 1")
+		);
+		assertNull(cache.get("loc1").get(10, TimeUnit.SECONDS));
+		assertEquals(cache.get("loc1").get(10, TimeUnit.SECONDS).getName(), "Location 1");
+	}
+}
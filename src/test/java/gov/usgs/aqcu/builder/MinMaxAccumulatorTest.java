@@ -0,0 +1,262 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+
+public class MinMaxAccumulatorTest {
+	private MinMaxBuilderService service;
+	private List<TimeSeriesPoint> points;
+
+	@Before
+	public void setup() {
+		service = new MinMaxBuilderService();
+		points = new ArrayList<>();
+		double[] values = {1.0D, 3.0D, 2.0D, 3.0D, 0.5D, 1.0D, 0.5D, 3.0D};
+		for(int i = 0; i < values.length; i++) {
+			points.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(86400L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(String.valueOf(values[i]))
+					.setNumeric(values[i])
+				)
+			);
+		}
+	}
+
+	@Test
+	public void addTest() {
+		MinMaxAccumulator accumulator = service.newAccumulator();
+		for(TimeSeriesPoint point : points) {
+			accumulator.add(point);
+		}
+		assertMinMaxEquals(service.findMinMaxPoints(points), accumulator.finish());
+	}
+
+	@Test
+	public void addAllChunksTest() {
+		TimeSeriesMinMax result = service.newAccumulator()
+			.addAll(points.subList(0, 3))
+			.addAll(new ArrayList<>())
+			.addAll(points.subList(3, 7))
+			.addAll(null)
+			.addAll(points.subList(7, 8))
+			.finish();
+
+		assertEquals(result.getMaxPoints().size(), 3);
+		assertEquals(result.getMaxPoints().get(0), points.get(1));
+		assertEquals(result.getMaxPoints().get(1), points.get(3));
+		assertEquals(result.getMaxPoints().get(2), points.get(7));
+		assertTrue(result.getMultipleMaxFlag());
+		assertEquals(result.getMinPoints().size(), 2);
+		assertEquals(result.getMinPoints().get(0), points.get(4));
+		assertEquals(result.getMinPoints().get(1), points.get(6));
+		assertTrue(result.getMultipleMinFlag());
+		assertMinMaxEquals(service.findMinMaxPoints(points), result);
+	}
+
+	@Test
+	public void addColumnsTest() {
+		MinMaxAccumulator accumulator = service.newAccumulator();
+		for(int from = 0; from < points.size(); from += 3) {
+			accumulator = service.addMinMaxColumnPoints(accumulator, TimeSeriesColumns.of(points.subList(from, Math.min(points.size(), from + 3))));
+		}
+		TimeSeriesMinMax expected = service.findMinMaxPoints(points);
+		TimeSeriesMinMax actual = accumulator.finish();
+		assertEquals(getTimes(actual.getMaxPoints()), getTimes(expected.getMaxPoints()));
+		assertEquals(getTimes(actual.getMinPoints()), getTimes(expected.getMinPoints()));
+		assertEquals(actual.getMultipleMaxFlag(), expected.getMultipleMaxFlag());
+		assertEquals(actual.getMultipleMinFlag(), expected.getMultipleMinFlag());
+
+		TimeSeriesColumns invalid = TimeSeriesColumns.of(Arrays.asList(new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-02-01T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay("NaN")
+				.setNumeric(Double.NaN)
+			)
+		));
+		assertNull(service.addMinMaxColumnPoints(service.newAccumulator(), invalid));
+		assertNull(service.addMinMaxColumnPoints(null, TimeSeriesColumns.of(points)));
+	}
+
+	@Test
+	public void emptyTest() {
+		TimeSeriesMinMax result = service.newAccumulator().finish();
+		assertEquals(result.getMaxPoints().size(), 0);
+		assertEquals(result.getMinPoints().size(), 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void invalidValueTest() {
+		service.newAccumulator().add(new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay("Infinity")
+				.setNumeric(Double.POSITIVE_INFINITY)
+			)
+		);
+	}
+
+	@Test
+	public void extendTest() {
+		assertExtendsAtEverySplit(points);
+
+		// Values differing only beyond their displayed precision
+		double[] values = {1.04D, 1.0D, 2.0D, 0.96D, 1.02D, 2.04D, 1.0D};
+		String[] displays = {"1.0", "1.0", "2.0", "1.0", "1.0", "2.0", "1.0"};
+		List<TimeSeriesPoint> rounded = new ArrayList<>();
+		for(int i = 0; i < values.length; i++) {
+			rounded.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(86400L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(displays[i])
+					.setNumeric(values[i])
+				)
+			);
+		}
+		assertExtendsAtEverySplit(rounded);
+	}
+
+	@Test
+	public void nonMonotoneDisplaysTest() {
+		// Rounded differently over time, so the display of the max is shared by a point far below it
+		double[] values = {9.6D, 9.9D, 10.2D, 9.7D};
+		String[] displays = {"10", "9.9", "10", "9.7"};
+		List<TimeSeriesPoint> pointList = new ArrayList<>();
+		for(int i = 0; i < values.length; i++) {
+			pointList.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T12:00:00Z").plusSeconds(86400L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(displays[i])
+					.setNumeric(values[i])
+				)
+			);
+		}
+		TimeSeriesColumns columns = TimeSeriesColumns.of(pointList);
+		List<TimeSeriesMinMax> results = Arrays.asList(
+			service.findMinMaxPoints(pointList),
+			service.newAccumulator().addAll(pointList.subList(0, 2)).addAll(pointList.subList(2, 4)).finish(),
+			service.findMinMaxColumnPoints(columns),
+			service.findMinMaxDailyPoints(service.summarizeDays(columns, ZoneOffset.UTC))
+		);
+		for(TimeSeriesMinMax result : results) {
+			assertEquals(result.getMaxPoints().get(0).getValue().getNumeric(), 10.2D, 0D);
+			assertTrue(result.getMultipleMaxFlag());
+			assertEquals(result.getMinPoints().get(0).getValue().getNumeric(), 9.6D, 0D);
+			assertTrue(result.getMultipleMinFlag());
+		}
+		assertExtendsAtEverySplit(pointList);
+
+		// Without the point sharing the display
+		TimeSeriesMinMax result = service.findMinMaxPoints(pointList.subList(1, 4));
+		assertFalse(result.getMultipleMaxFlag());
+		assertFalse(result.getMultipleMinFlag());
+	}
+
+	@Test
+	public void summarizeDaysTest() {
+		// Several points a day, with values and displays tying across days
+		Random random = new Random(7);
+		List<TimeSeriesPoint> pointList = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			double value = random.nextInt(60) / 10D;
+			pointList.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(3600L * 5 * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(BigDecimal.valueOf(value).setScale(0, RoundingMode.HALF_UP).toPlainString())
+					.setNumeric(value)
+				)
+			);
+		}
+		TimeSeriesColumns columns = TimeSeriesColumns.of(pointList);
+		TimeSeriesMinMax expected = service.findMinMaxColumnPoints(columns);
+
+		List<DailyExtremes> days = service.summarizeDays(columns, ZoneOffset.ofHours(-5));
+		assertEquals(days.size(), 43);
+		TimeSeriesMinMax actual = service.findMinMaxDailyPoints(days);
+		assertEquals(getTimes(actual.getMaxPoints()), getTimes(expected.getMaxPoints()));
+		assertEquals(getTimes(actual.getMinPoints()), getTimes(expected.getMinPoints()));
+		assertEquals(actual.getMaxPoints().get(0).getValue().getDisplay(), expected.getMaxPoints().get(0).getValue().getDisplay());
+		assertEquals(actual.getMinPoints().get(0).getValue().getNumeric(), expected.getMinPoints().get(0).getValue().getNumeric());
+		assertEquals(actual.getMultipleMaxFlag(), expected.getMultipleMaxFlag());
+		assertEquals(actual.getMultipleMinFlag(), expected.getMultipleMinFlag());
+	}
+
+	@Test
+	public void summarizeDaysInvalidTest() {
+		TimeSeriesColumns columns = TimeSeriesColumns.of(Arrays.asList(new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay("NaN")
+				.setNumeric(Double.NaN)
+			)
+		));
+		assertNull(service.summarizeDays(columns, ZoneOffset.UTC));
+		assertTrue(service.findMinMaxDailyPoints(new ArrayList<>()).getMaxPoints().isEmpty());
+	}
+
+	private void assertExtendsAtEverySplit(List<TimeSeriesPoint> pointList) {
+		TimeSeriesColumns columns = TimeSeriesColumns.of(pointList);
+		TimeSeriesMinMax expected = service.findMinMaxColumnPoints(columns);
+		for(int split = 1; split <= pointList.size(); split++) {
+			TimeSeriesMinMax previous = service.findMinMaxColumnPoints(TimeSeriesColumns.of(pointList.subList(0, split)));
+			TimeSeriesMinMax actual = service.extendMinMaxColumnPoints(previous, columns, split);
+			assertEquals(getTimes(actual.getMaxPoints()), getTimes(expected.getMaxPoints()));
+			assertEquals(getTimes(actual.getMinPoints()), getTimes(expected.getMinPoints()));
+			assertEquals(actual.getMultipleMaxFlag(), expected.getMultipleMaxFlag());
+			assertEquals(actual.getMultipleMinFlag(), expected.getMultipleMinFlag());
+		}
+	}
+
+	private List<Instant> getTimes(List<TimeSeriesPoint> pointList) {
+		return pointList.stream().map(p -> p.getTimestamp().getDateTimeOffset()).collect(Collectors.toList());
+	}
+
+	private void assertMinMaxEquals(TimeSeriesMinMax expected, TimeSeriesMinMax actual) {
+		assertEquals(expected.getMaxPoints(), actual.getMaxPoints());
+		assertEquals(expected.getMinPoints(), actual.getMinPoints());
+		assertEquals(expected.getMultipleMaxFlag(), actual.getMultipleMaxFlag());
+		assertEquals(expected.getMultipleMinFlag(), actual.getMultipleMinFlag());
+	}
+}
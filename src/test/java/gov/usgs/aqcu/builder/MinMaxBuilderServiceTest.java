@@ -1,13 +1,15 @@
 package gov.usgs.aqcu.builder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
@@ -27,7 +29,7 @@ public class MinMaxBuilderServiceTest {
 	}
 
 	@Test
-	public void pointListToMapTest() {
+	public void buildColumnsTest() {
 		List<TimeSeriesPoint> pointList = Arrays.asList(
 			new TimeSeriesPoint()
 				.setTimestamp(new StatisticalDateTimeOffset()
@@ -49,21 +51,25 @@ public class MinMaxBuilderServiceTest {
 				)
 		);
 
-		Map<Instant, TimeSeriesPoint> result = service.pointListToMap(pointList);
+		TimeSeriesColumns result = service.buildColumns(pointList);
 		assertEquals(result.size(), 2);
-		assertEquals(result.get(pointList.get(0).getTimestamp().getDateTimeOffset()), pointList.get(0));
-		assertEquals(result.get(pointList.get(1).getTimestamp().getDateTimeOffset()), pointList.get(1));
+		assertEquals(result.getTime(0), Instant.parse("2018-01-01T00:00:00Z"));
+		assertEquals(result.getValue(0), 1.0D, 0D);
+		assertEquals(result.getDisplay(0), "1.0");
+		assertEquals(result.getTime(1), Instant.parse("2018-01-02T00:00:00Z"));
+		assertEquals(result.getValue(1), 2.0D, 0D);
+		assertEquals(result.getDisplay(1), "2.0");
 	}
 
 	@Test
-	public void pointListToMapEmptyTest() {
-		Map<Instant, TimeSeriesPoint> result = service.pointListToMap(new ArrayList<>());
+	public void buildColumnsEmptyTest() {
+		TimeSeriesColumns result = service.buildColumns(new ArrayList<>());
 		assertTrue(result.isEmpty());
 	}
 
 	@Test
-	public void pointListToMapNullTest() {
-		Map<Instant, TimeSeriesPoint> result = service.pointListToMap(null);
+	public void buildColumnsNullTest() {
+		TimeSeriesColumns result = service.buildColumns(null);
 		assertTrue(result.isEmpty());
 	}
 	
@@ -164,6 +170,101 @@ public class MinMaxBuilderServiceTest {
 		assertEquals(result.size(), 0);
 	}
 		
+	@Test
+	public void findMatchingPointsLinkedListTest() {
+		List<TimeSeriesPoint> pointList = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-03T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-05T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.0D)
+				)
+		);
+
+		List<TimeSeriesPoint> relatedPointList = new LinkedList<>(Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.2")
+					.setNumeric(2.2D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-03T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.3")
+					.setNumeric(2.3D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-04T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.4")
+					.setNumeric(2.4D)
+				)
+		));
+
+		List<TimeSeriesPoint> result = service.findMatchingPoints(pointList, relatedPointList);
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0), relatedPointList.get(1));
+		result = service.findMatchingPoints(pointList, new ArrayList<>(relatedPointList));
+		assertEquals(result.size(), 1);
+		assertEquals(result.get(0), relatedPointList.get(1));
+	}
+
+	@Test
+	public void findPointAtTest() {
+		List<TimeSeriesPoint> pointList = new ArrayList<>();
+		for(int i = 0; i < 10; i++) {
+			pointList.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(900L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(i + ".0")
+					.setNumeric((double) i)
+				)
+			);
+		}
+
+		for(int i = 0; i < 10; i++) {
+			assertEquals(service.findPointAt(pointList, pointList.get(i).getTimestamp().getDateTimeOffset()), pointList.get(i));
+		}
+		assertNull(service.findPointAt(pointList, Instant.parse("2017-12-31T00:00:00Z")));
+		assertNull(service.findPointAt(pointList, Instant.parse("2018-01-01T00:01:00Z")));
+		assertNull(service.findPointAt(pointList, Instant.parse("2018-01-02T00:00:00Z")));
+		assertNull(service.findPointAt(new ArrayList<>(), Instant.parse("2018-01-01T00:00:00Z")));
+	}
+
 	@Test
 	public void findMatchingPointsEmptyTest() {
 		List<TimeSeriesPoint> pointList = Arrays.asList(
@@ -301,6 +402,82 @@ public class MinMaxBuilderServiceTest {
 		assertEquals(result.getMinPoints().size(), 0);
 	}
 
+	@Test
+	public void findMinMaxRelatedPointsTest() {
+		List<TimeSeriesPoint> primaryPointListMax = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T12:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.2")
+					.setNumeric(1.2D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.2")
+					.setNumeric(2.2D)
+				)
+		);
+
+		List<TimeSeriesPoint> primaryPointListMin = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.3")
+					.setNumeric(1.3D)
+				)
+		);
+
+		List<TimeSeriesPoint> relatedPointList = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.0")
+					.setNumeric(2.0D)
+				)
+		);
+
+		TimeSeriesMinMax primaryMinMax = new TimeSeriesMinMax();
+		primaryMinMax.setMaxPoints(primaryPointListMax);
+		primaryMinMax.setMinPoints(primaryPointListMin);
+
+		TimeSeriesColumns relatedColumns = service.buildColumns(relatedPointList);
+		TimeSeriesMinMax result = service.findMinMaxRelatedPoints(primaryMinMax, relatedColumns);
+		assertEquals(result.getMaxPoints().size(), 1);
+		assertEquals(result.getMaxPoints().get(0).getTimestamp().getDateTimeOffset(), Instant.parse("2018-01-02T00:00:00Z"));
+		assertEquals(result.getMaxPoints().get(0).getValue().getDisplay(), "2.0");
+		assertEquals(result.getMinPoints().size(), 1);
+		assertEquals(result.getMinPoints().get(0).getTimestamp().getDateTimeOffset(), Instant.parse("2018-01-01T00:00:00Z"));
+		assertEquals(result.getMinPoints().get(0).getValue().getDisplay(), "1.0");
+		result = service.findMinMaxRelatedPoints(primaryMinMax, service.buildColumns(null));
+		assertEquals(result.getMaxPoints().size(), 0);
+		assertEquals(result.getMinPoints().size(), 0);
+		result = service.findMinMaxRelatedPoints(null, relatedColumns);
+		assertEquals(result.getMaxPoints().size(), 0);
+		assertEquals(result.getMinPoints().size(), 0);
+	}
+
 	@Test
 	public void findMinMaxMatchingPointsEmptyTest() {
 		List<TimeSeriesPoint> primaryPointList = Arrays.asList(
@@ -528,6 +705,67 @@ public class MinMaxBuilderServiceTest {
 		assertEquals(result.getMinPoints().get(0).getValue().getDisplay(), "0.5");
 		assertEquals(result.getMinPoints().get(1), pointList.get(5));
 		assertEquals(result.getMinPoints().get(1).getValue().getDisplay(), "0.5");
+		assertFalse(result.getMultipleMaxFlag());
+		assertTrue(result.getMultipleMinFlag());
+	}
+
+	@Test
+	public void findMinMaxPointsMultipleFlagTest() {
+		List<TimeSeriesPoint> pointList = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.9")
+					.setNumeric(2.94D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("3.0")
+					.setNumeric(2.96D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-03T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("3.0")
+					.setNumeric(3.04D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-04T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.04D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-05T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.1")
+					.setNumeric(1.06D)
+				)
+		);
+
+		TimeSeriesMinMax result = service.findMinMaxPoints(pointList);
+		assertEquals(result.getMaxPoints().size(), 1);
+		assertEquals(result.getMaxPoints().get(0), pointList.get(2));
+		assertTrue(result.getMultipleMaxFlag());
+		assertEquals(result.getMinPoints().size(), 1);
+		assertEquals(result.getMinPoints().get(0), pointList.get(3));
+		assertFalse(result.getMultipleMinFlag());
 	}
 
 	@Test
@@ -543,4 +781,82 @@ public class MinMaxBuilderServiceTest {
 		assertEquals(result.getMaxPoints().size(), 0);
 		assertEquals(result.getMaxPoints().size(), 0);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void findMinMaxPointsLinkedListTest() {
+		List<TimeSeriesPoint> pointList = new LinkedList<>(Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.0")
+					.setNumeric(2.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("-0.0")
+					.setNumeric(-0.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-03T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("2.0")
+					.setNumeric(2.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-04T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("0.0")
+					.setNumeric(0.0D)
+				)
+		));
+
+		TimeSeriesMinMax result = service.findMinMaxPoints(pointList);
+		assertEquals(result.getMaxPoints().size(), 2);
+		assertEquals(result.getMaxPoints().get(0), pointList.get(0));
+		assertEquals(result.getMaxPoints().get(1), pointList.get(2));
+		assertEquals(result.getMinPoints().size(), 2);
+		assertEquals(result.getMinPoints().get(0), pointList.get(1));
+		assertEquals(result.getMinPoints().get(1), pointList.get(3));
+	}
+
+	@Test
+	public void findMinMaxPointsInvalidValueTest() {
+		List<TimeSeriesPoint> pointList = Arrays.asList(
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("1.0")
+					.setNumeric(1.0D)
+				),
+			new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay("NaN")
+					.setNumeric(Double.NaN)
+				)
+		);
+
+		TimeSeriesMinMax result = service.findMinMaxPoints(pointList);
+		assertEquals(result.getMaxPoints().size(), 0);
+		assertEquals(result.getMinPoints().size(), 0);
+	}
+}
@@ -0,0 +1,124 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+
+public class MinMaxPartialTest {
+	private List<TimeSeriesPoint> points;
+
+	@Before
+	public void setup() {
+		Random random = new Random(42);
+		Instant start = Instant.parse("2018-01-01T00:00:00Z");
+		points = new ArrayList<>();
+		for(int i = 0; i < 100000; i++) {
+			double value = random.nextInt(20000) / 1000D;
+			points.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(start.plusSeconds(900L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(BigDecimal.valueOf(value).setScale(1, RoundingMode.HALF_UP).toPlainString())
+					.setNumeric(value)
+				)
+			);
+		}
+	}
+
+	@Test
+	public void mergeMatchesSequentialTest() {
+		MinMaxPartial sequential = scan(0, points.size());
+
+		for(int chunkSize : new int[] {1, 7, 1000, 33333}) {
+			MinMaxPartial merged = new MinMaxPartial();
+			for(int from = 0; from < points.size(); from += chunkSize) {
+				merged.merge(scan(from, Math.min(points.size(), from + chunkSize)));
+			}
+			assertMinMaxEquals(sequential.toMinMax(null), merged.toMinMax(null));
+		}
+	}
+
+	@Test
+	public void restoredMatchesSequentialTest() {
+		TimeSeriesMinMax sequential = scan(0, points.size()).toMinMax(null);
+
+		for(int split : new int[] {1, 1000, 50000, 99999}) {
+			MinMaxPartial restored = MinMaxPartial.of(scan(0, split).toMinMax(null));
+			restored.merge(scan(split, points.size()));
+			assertMinMaxEquals(sequential, restored.toMinMax(null));
+		}
+	}
+
+	@Test
+	public void parallelMatchesSequentialTest() {
+		TimeSeriesMinMax sequential = new MinMaxBuilderService().findMinMaxPoints(points);
+		TimeSeriesMinMax parallel = new MinMaxBuilderService(1).findMinMaxPoints(points);
+		assertTrue(sequential.getMaxPoints().size() > 1);
+		assertMinMaxEquals(sequential, parallel);
+	}
+
+	@Test
+	public void columnsMatchListTest() {
+		TimeSeriesColumns columns = TimeSeriesColumns.of(points);
+		TimeSeriesMinMax expected = new MinMaxBuilderService().findMinMaxPoints(points);
+		assertSamePoints(expected, new MinMaxBuilderService().findMinMaxColumnPoints(columns));
+		assertSamePoints(expected, new MinMaxBuilderService(1).findMinMaxColumnPoints(columns));
+	}
+
+	@Test
+	public void emptyTest() {
+		MinMaxPartial partial = new MinMaxPartial();
+		partial.merge(new MinMaxPartial());
+		assertTrue(partial.isEmpty());
+		assertTrue(partial.toMinMax(null).getMaxPoints().isEmpty());
+		assertTrue(partial.toMinMax(null).getMinPoints().isEmpty());
+	}
+
+	private MinMaxPartial scan(int from, int to) {
+		MinMaxPartial partial = new MinMaxPartial();
+		for(int i = from; i < to; i++) {
+			partial.add(i, points.get(i), points.get(i).getValue().getNumeric(), points.get(i).getValue().getDisplay());
+		}
+		return partial;
+	}
+
+	private void assertSamePoints(TimeSeriesMinMax expected, TimeSeriesMinMax actual) {
+		assertSamePoints(expected.getMaxPoints(), actual.getMaxPoints());
+		assertSamePoints(expected.getMinPoints(), actual.getMinPoints());
+		assertEquals(expected.getMultipleMaxFlag(), actual.getMultipleMaxFlag());
+		assertEquals(expected.getMultipleMinFlag(), actual.getMultipleMinFlag());
+	}
+
+	private void assertSamePoints(List<TimeSeriesPoint> expected, List<TimeSeriesPoint> actual) {
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getTimestamp().getDateTimeOffset(), actual.get(i).getTimestamp().getDateTimeOffset());
+			assertEquals(expected.get(i).getValue().getNumeric(), actual.get(i).getValue().getNumeric());
+			assertEquals(expected.get(i).getValue().getDisplay(), actual.get(i).getValue().getDisplay());
+		}
+	}
+
+	private void assertMinMaxEquals(TimeSeriesMinMax expected, TimeSeriesMinMax actual) {
+		assertEquals(expected.getMaxPoints(), actual.getMaxPoints());
+		assertEquals(expected.getMinPoints(), actual.getMinPoints());
+		assertEquals(expected.getMultipleMaxFlag(), actual.getMultipleMaxFlag());
+		assertEquals(expected.getMultipleMinFlag(), actual.getMultipleMinFlag());
+	}
+}
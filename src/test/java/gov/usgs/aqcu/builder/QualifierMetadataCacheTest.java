@@ -0,0 +1,120 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.QualifierMetadata;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import gov.usgs.aqcu.retrieval.QualifierLookupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class QualifierMetadataCacheTest {
+	private QualifierLookupService qualLookupService;
+	private QualifierMetadataCache cache;
+	private List<Runnable> refreshes;
+	private AtomicLong nanos;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		qualLookupService = mock(QualifierLookupService.class);
+		// Returns metadata for every requested identifier except "unknown"
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(invocation -> 
+			((List<Qualifier>) invocation.getArguments()[0]).stream()
+				.map(q -> q.getIdentifier())
+				.filter(i -> !"unknown".equals(i))
+				.collect(Collectors.toMap(i -> i, i -> new QualifierMetadata().setIdentifier(i)))
+		);
+		refreshes = new ArrayList<>();
+		nanos = new AtomicLong();
+		cache = new QualifierMetadataCache(qualLookupService, refreshes::add, new SimpleMeterRegistry(), 100, 21600, nanos::get);
+	}
+
+	@Test
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void deduplicatedLookupTest() {
+		List<Qualifier> qualifiers = Arrays.asList(
+			new Qualifier().setIdentifier("qual1"),
+			new Qualifier().setIdentifier("qual2"),
+			new Qualifier().setIdentifier("qual1"),
+			new Qualifier().setIdentifier("qual1")
+		);
+
+		Map<String, QualifierMetadata> result = cache.getByQualifierList(qualifiers);
+		assertEquals(result.size(), 2);
+		assertEquals(result.get("qual1").getIdentifier(), "qual1");
+		assertEquals(result.get("qual2").getIdentifier(), "qual2");
+
+		ArgumentCaptor<List> requested = ArgumentCaptor.forClass(List.class);
+		verify(qualLookupService).getByQualifierList(requested.capture());
+		assertEquals(requested.getValue().size(), 2);
+	}
+
+	@Test
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void cachedTest() {
+		cache.getByQualifierList(Arrays.asList(new Qualifier().setIdentifier("qual1")));
+		Map<String, QualifierMetadata> result = cache.getByQualifierList(Arrays.asList(
+			new Qualifier().setIdentifier("qual1"),
+			new Qualifier().setIdentifier("qual2")
+		));
+		assertEquals(result.size(), 2);
+
+		ArgumentCaptor<List> requested = ArgumentCaptor.forClass(List.class);
+		verify(qualLookupService, times(2)).getByQualifierList(requested.capture());
+		assertEquals(((Qualifier) requested.getAllValues().get(1).get(0)).getIdentifier(), "qual2");
+		assertEquals(requested.getAllValues().get(1).size(), 1);
+	}
+
+	@Test
+	public void unknownTest() {
+		Map<String, QualifierMetadata> result = cache.getByQualifierList(Arrays.asList(
+			new Qualifier().setIdentifier("qual1"),
+			new Qualifier().setIdentifier("unknown")
+		));
+		assertEquals(result.size(), 1);
+		assertFalse(result.containsKey("unknown"));
+	}
+
+	@Test
+	public void refreshTest() {
+		List<Qualifier> qualifiers = Arrays.asList(new Qualifier().setIdentifier("qual1"));
+		QualifierMetadata first = cache.getByQualifierList(qualifiers).get("qual1");
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(21601));
+
+		// The cached metadata is returned while the refresh waits on the executor
+		assertSame(cache.getByQualifierList(qualifiers).get("qual1"), first);
+		verify(qualLookupService, times(1)).getByQualifierList(any());
+
+		runRefreshes();
+		verify(qualLookupService, times(2)).getByQualifierList(any());
+		assertNotSame(cache.getByQualifierList(qualifiers).get("qual1"), first);
+	}
+
+	// Also runs the cache maintenance queued on the executor
+	private void runRefreshes() {
+		while(!refreshes.isEmpty()) {
+			refreshes.remove(0).run();
+		}
+	}
+}
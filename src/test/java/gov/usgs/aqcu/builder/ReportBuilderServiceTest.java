@@ -1,10 +1,18 @@
 package gov.usgs.aqcu.builder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 
@@ -14,24 +22,49 @@ import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.LocationDescription;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.QualifierMetadata;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDataServiceResponse;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDescription;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIdListServiceResponse;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesUniqueIds;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
 import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.google.gson.Gson;
 
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import gov.usgs.aqcu.Controller;
+import gov.usgs.aqcu.ReportValidatorCache;
 import gov.usgs.aqcu.model.ExtremesMinMax;
 import gov.usgs.aqcu.model.ExtremesPoint;
 import gov.usgs.aqcu.model.ExtremesReport;
@@ -39,16 +72,28 @@ import gov.usgs.aqcu.model.ExtremesReportMetadata;
 import gov.usgs.aqcu.parameter.ExtremesRequestParameters;
 import gov.usgs.aqcu.retrieval.LocationDescriptionListService;
 import gov.usgs.aqcu.retrieval.QualifierLookupService;
+import gov.usgs.aqcu.retrieval.TimeSeriesChangeListService;
 import gov.usgs.aqcu.retrieval.TimeSeriesDataService;
 import gov.usgs.aqcu.retrieval.TimeSeriesDescriptionListService;
+import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
 import gov.usgs.aqcu.util.AqcuTimeUtils;
 import gov.usgs.aqcu.util.DoubleWithDisplayUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @RunWith(SpringRunner.class)
 public class ReportBuilderServiceTest {
 	private ReportBuilderService service;
 	private MinMaxBuilderService minMaxBuilderService;
 	private ExtremesRequestParameters requestParameters;
+	private ExecutorService fetchExecutor;
+	private SeriesExtremesCache seriesExtremesCache;
+	private TimeSeriesDescriptionCache timeSeriesDescriptionCache;
+	private LocationDescriptionCache locationDescriptionCache;
+	private QualifierMetadataCache qualifierMetadataCache;
+	private DailyExtremesStore dailyExtremesStore;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
 
 	@MockBean
 	LocationDescriptionListService locDescService;
@@ -58,6 +103,8 @@ public class ReportBuilderServiceTest {
 	TimeSeriesDataService tsDataService;
 	@MockBean
 	QualifierLookupService qualLookupService;
+	@MockBean
+	TimeSeriesChangeListService tsChangeService;
 
 	private TimeSeriesDescription primaryDesc = new TimeSeriesDescription()
 		.setUniqueId("primaryTsId")
@@ -199,7 +246,13 @@ public class ReportBuilderServiceTest {
 	@Before
 	public void setup() {
 		minMaxBuilderService = new MinMaxBuilderService();
-		service = new ReportBuilderService(locDescService, minMaxBuilderService, tsDescService, tsDataService, qualLookupService);
+		fetchExecutor = Executors.newFixedThreadPool(3);
+		seriesExtremesCache = new SeriesExtremesCache(new SimpleMeterRegistry(), 1000000, 600, 0, 1200, 86400, 300);
+		timeSeriesDescriptionCache = new TimeSeriesDescriptionCache(tsDescService, fetchExecutor, new SimpleMeterRegistry(), 100, 3600, 86400);
+		qualifierMetadataCache = new QualifierMetadataCache(qualLookupService, fetchExecutor, new SimpleMeterRegistry(), 100, 21600);
+		locationDescriptionCache = new LocationDescriptionCache(locDescService, fetchExecutor, new SimpleMeterRegistry(), 100, 86400);
+		dailyExtremesStore = new DailyExtremesStore("", 366);
+		service = new ReportBuilderService(locationDescriptionCache, minMaxBuilderService, timeSeriesDescriptionCache, tsDataService, qualifierMetadataCache, fetchExecutor, seriesExtremesCache, tsChangeService, dailyExtremesStore);
 		requestParameters = new ExtremesRequestParameters();
 		requestParameters.setStartDate(LocalDate.parse("2018-01-01"));
 		requestParameters.setEndDate(LocalDate.parse("2018-02-01"));
@@ -216,6 +269,20 @@ public class ReportBuilderServiceTest {
 		qualMetadata.put("qual3", new QualifierMetadata().setIdentifier("qual3"));
 	}
 
+	// Answers a qualifier lookup with the metadata of the qualifiers asked for
+	@SuppressWarnings("unchecked")
+	private Map<String, QualifierMetadata> getQualifierMetadata(InvocationOnMock invocation) {
+		return ((List<Qualifier>) invocation.getArguments()[0]).stream()
+			.map(q -> q.getIdentifier())
+			.distinct()
+			.collect(Collectors.toMap(i -> i, i -> qualMetadata.get(i)));
+	}
+
+	@After
+	public void tearDown() {
+		fetchExecutor.shutdownNow();
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void buildReportFullTest() {
@@ -237,9 +304,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(derivedPoints)
 				.setQualifiers(quals3)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -324,9 +389,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(derivedPoints)
 				.setQualifiers(quals3)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -369,7 +432,7 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getReportMetadata().getPrimaryLabel(), primaryDesc.getIdentifier());
 		assertEquals(result.getReportMetadata().getUpchainLabel(), upchainDesc.getIdentifier());
 		assertEquals(result.getReportMetadata().getDvLabel(), derivedDesc.getIdentifier());
-		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 3);
+		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 2);
 	}
 
 	@Test
@@ -393,9 +456,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(derivedPoints)
 				.setQualifiers(quals3)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -463,9 +524,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(new ArrayList<>())
 				.setQualifiers(quals3)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -513,7 +572,7 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getReportMetadata().getPrimaryLabel(), primaryDesc.getIdentifier());
 		assertEquals(result.getReportMetadata().getUpchainLabel(), upchainDesc.getIdentifier());
 		assertEquals(result.getReportMetadata().getDvLabel(), derivedDesc.getIdentifier());
-		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 3);
+		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 2);
 	}
 
 	@Test
@@ -537,9 +596,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(new ArrayList<>())
 				.setQualifiers(new ArrayList<>())
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -589,9 +646,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(derivedPoints)
 				.setQualifiers(quals3)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -652,9 +707,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(upchainPoints)
 				.setQualifiers(quals2)
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -700,7 +753,7 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getReportMetadata().getStationId(), "loc1");
 		assertEquals(result.getReportMetadata().getPrimaryLabel(), primaryDesc.getIdentifier());
 		assertEquals(result.getReportMetadata().getUpchainLabel(), upchainDesc.getIdentifier());
-		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 3);
+		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 2);
 	}
 
 	@Test
@@ -714,9 +767,7 @@ public class ReportBuilderServiceTest {
 				.setPoints(primaryPoints)
 				.setQualifiers(new ArrayList<>())
 		);
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -753,6 +804,552 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 0);
 	}
 	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportConcurrentFetchTest() {
+		CountDownLatch fetches = new CountDownLatch(3);
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc, upchainDesc, derivedDesc)
+		);
+		// Each fetch only returns once all three have started
+		willAnswer(invocation -> {
+			fetches.countDown();
+			assertTrue(fetches.await(10, TimeUnit.SECONDS));
+			return new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(new ArrayList<>());
+		}).given(tsDataService).get(any(String.class), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), any(Boolean.class), eq(false), eq(false), eq(null));
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+		requestParameters.setUpchainTimeseriesIdentifier("upchainTsId");
+		requestParameters.setDerivedTimeseriesIdentifier("derivedTsId");
+
+		ExtremesReport result = service.buildReport(requestParameters, "test-user");
+		assertEquals(fetches.getCount(), 0);
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+		assertEquals(result.getUpchain().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+		assertEquals(result.getDv().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportOverlappedLookupsTest() {
+		CountDownLatch locationLookup = new CountDownLatch(1);
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		// The primary data only returns once the location lookup has run
+		willAnswer(invocation -> {
+			assertTrue(locationLookup.await(10, TimeUnit.SECONDS));
+			return new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(quals1);
+		}).given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		willAnswer(invocation -> {
+			locationLookup.countDown();
+			return new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1");
+		}).given(locDescService).getByLocationIdentifier(any(String.class));
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
+
+		ExtremesReport result = service.buildReport(requestParameters, "test-user");
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+		assertEquals(result.getReportMetadata().getStationName(), "loc1");
+		assertEquals(result.getReportMetadata().getPrimaryLabel(), primaryDesc.getIdentifier());
+		assertEquals(result.getReportMetadata().getQualifierMetadata().size(), 2);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportDuplicateSeriesTest() {
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		given(tsDataService.get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), any(Boolean.class), eq(false), eq(false), eq(null))).willReturn(
+			new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(quals1)
+		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+		requestParameters.setUpchainTimeseriesIdentifier("primaryTsId");
+		requestParameters.setDerivedTimeseriesIdentifier("primaryTsId");
+
+		ExtremesReport result = service.buildReport(requestParameters, "test-user");
+
+		// Upchain is the same fetch as primary, derived differs by its daily flag
+		verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(true), eq(false), eq(false), eq(null));
+		verify(qualLookupService, atMost(2)).getByQualifierList(any(List.class));
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+		assertEquals(result.getUpchain().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+		assertEquals(result.getPrimary().getMax().get(ReportBuilderService.UPCHAIN_RELATED_KEY).size(), 3);
+		assertEquals(result.getUpchain().getMax().get(ReportBuilderService.PRIMARY_RELATED_KEY).size(), 3);
+		assertEquals(result.getDv().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 3);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportCachedSeriesTest() {
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		given(tsDataService.get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null))).willReturn(
+			new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(quals1)
+		);
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+
+		ExtremesReport first = service.buildReport(requestParameters, "test-user");
+		ExtremesReport second = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertEquals(second.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), first.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size());
+		assertEquals(second.getPrimary().getQualifiers().size(), first.getPrimary().getQualifiers().size());
+
+		// A different period is a different fetch
+		requestParameters.setEndDate(LocalDate.parse("2018-03-01"));
+		service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(2)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportOverlappingPeriodTest() {
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		// A value per day, approved until the middle of February
+		willAnswer(invocation -> {
+			ExtremesRequestParameters params = (ExtremesRequestParameters) invocation.getArguments()[1];
+			List<TimeSeriesPoint> points = new ArrayList<>();
+			for(LocalDate day = params.getStartDate(); !day.isAfter(params.getEndDate()); day = day.plusDays(1)) {
+				points.add(new TimeSeriesPoint()
+					.setTimestamp(new StatisticalDateTimeOffset()
+						.setDateTimeOffset(day.atTime(12, 0).toInstant(ZoneOffset.UTC))
+						.setRepresentsEndOfTimePeriod(false)
+					)
+					.setValue(new DoubleWithDisplay()
+						.setDisplay(String.valueOf(day.getDayOfYear()))
+						.setNumeric((double) day.getDayOfYear())
+					)
+				);
+			}
+			return new TimeSeriesDataServiceResponse()
+				.setPoints(points)
+				.setApprovals(Arrays.asList(
+					new Approval().setApprovalLevel(1200).setStartTime(Instant.parse("2017-10-01T00:00:00Z")).setEndTime(Instant.parse("2018-02-15T00:00:00Z")),
+					new Approval().setApprovalLevel(900).setStartTime(Instant.parse("2018-02-15T00:00:00Z")).setEndTime(Instant.parse("2018-04-01T00:00:00Z"))
+				));
+		}).given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+
+		service.buildReport(requestParameters, "test-user");
+		requestParameters.setStartDate(LocalDate.parse("2018-01-15"));
+		requestParameters.setEndDate(LocalDate.parse("2018-03-01"));
+		ExtremesReport result = service.buildReport(requestParameters, "test-user");
+
+		// Only the days after the first period are fetched
+		ArgumentCaptor<ExtremesRequestParameters> fetched = ArgumentCaptor.forClass(ExtremesRequestParameters.class);
+		verify(tsDataService, times(2)).get(eq("primaryTsId"), fetched.capture(), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertEquals(fetched.getAllValues().get(1).getStartDate(), LocalDate.parse("2018-02-02"));
+		assertEquals(fetched.getAllValues().get(1).getEndDate(), LocalDate.parse("2018-03-01"));
+		assertEquals(result.getPrimary().getMin().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 1);
+		assertEquals(result.getPrimary().getMin().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("15"));
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 1);
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("60"));
+
+		// Days that were not approved are fetched again
+		requestParameters.setStartDate(LocalDate.parse("2018-02-10"));
+		requestParameters.setEndDate(LocalDate.parse("2018-02-20"));
+		result = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(3)).get(eq("primaryTsId"), fetched.capture(), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertEquals(fetched.getValue().getStartDate(), LocalDate.parse("2018-02-15"));
+		assertEquals(fetched.getValue().getEndDate(), LocalDate.parse("2018-02-20"));
+		assertEquals(result.getPrimary().getMin().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("41"));
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("51"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportWatermarkTest() {
+		AtomicLong nanos = new AtomicLong();
+		seriesExtremesCache = new SeriesExtremesCache(new SimpleMeterRegistry(), 1000000, 600, 0, 1200, 86400, 300, nanos::get);
+		service = new ReportBuilderService(locationDescriptionCache, minMaxBuilderService, timeSeriesDescriptionCache, tsDataService, qualifierMetadataCache, fetchExecutor, seriesExtremesCache, tsChangeService, dailyExtremesStore);
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		// A value per day up to the last day received, all provisional
+		AtomicReference<LocalDate> lastDay = new AtomicReference<>(LocalDate.parse("2018-02-10"));
+		willAnswer(invocation -> {
+			ExtremesRequestParameters params = (ExtremesRequestParameters) invocation.getArguments()[1];
+			List<TimeSeriesPoint> points = new ArrayList<>();
+			for(LocalDate day = params.getStartDate(); !day.isAfter(params.getEndDate()) && !day.isAfter(lastDay.get()); day = day.plusDays(1)) {
+				points.add(new TimeSeriesPoint()
+					.setTimestamp(new StatisticalDateTimeOffset()
+						.setDateTimeOffset(day.atTime(12, 0).toInstant(ZoneOffset.UTC))
+						.setRepresentsEndOfTimePeriod(false)
+					)
+					.setValue(new DoubleWithDisplay()
+						.setDisplay(String.valueOf(day.getDayOfYear()))
+						.setNumeric((double) day.getDayOfYear())
+					)
+				);
+			}
+			return new TimeSeriesDataServiceResponse()
+				.setPoints(points)
+				.setApprovals(Arrays.asList(
+					new Approval().setApprovalLevel(900).setStartTime(Instant.parse("2017-10-01T00:00:00Z")).setEndTime(Instant.parse("2018-04-01T00:00:00Z"))
+				));
+		}).given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		AtomicBoolean listed = new AtomicBoolean();
+		AtomicReference<Instant> firstPointChanged = new AtomicReference<>();
+		willAnswer(invocation -> new TimeSeriesUniqueIdListServiceResponse()
+			.setNextToken(Instant.ofEpochSecond(nanos.get()))
+			.setTimeSeriesUniqueIds(!listed.get() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(
+				new TimeSeriesUniqueIds().setUniqueId("otherTsId").setFirstPointChanged(Instant.parse("2017-01-01T00:00:00Z")),
+				new TimeSeriesUniqueIds().setUniqueId("primaryTsId").setFirstPointChanged(firstPointChanged.get())
+			)))
+		).given(tsChangeService).getChangesSince(eq("loc1"), any(Instant.class));
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+		requestParameters.setEndDate(LocalDate.parse("2018-03-01"));
+		ArgumentCaptor<ExtremesRequestParameters> fetched = ArgumentCaptor.forClass(ExtremesRequestParameters.class);
+
+		ExtremesReport result = service.buildReport(requestParameters, "test-user");
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("41"));
+		// The watermark is seeded without asking AQUARIUS for changes
+		verify(tsChangeService, never()).getChangesSince(any(String.class), any(Instant.class));
+
+		// Nothing changed
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		result = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("41"));
+
+		// Points appended
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		lastDay.set(LocalDate.parse("2018-02-20"));
+		listed.set(true);
+		firstPointChanged.set(Instant.parse("2018-02-11T12:00:00Z"));
+		result = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(2)).get(eq("primaryTsId"), fetched.capture(), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertEquals(fetched.getValue().getStartDate(), LocalDate.parse("2018-02-11"));
+		assertEquals(fetched.getValue().getEndDate(), LocalDate.parse("2018-03-01"));
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("51"));
+		assertEquals(result.getPrimary().getMin().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("1"));
+
+		// An earlier point edited
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		firstPointChanged.set(Instant.parse("2018-01-05T12:00:00Z"));
+		result = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(3)).get(eq("primaryTsId"), fetched.capture(), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertSame(fetched.getValue(), requestParameters);
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("51"));
+
+		// Listed without a changed point, as for changed approvals or qualifiers
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		firstPointChanged.set(null);
+		result = service.buildReport(requestParameters, "test-user");
+		verify(tsDataService, times(4)).get(eq("primaryTsId"), fetched.capture(), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		assertSame(fetched.getValue(), requestParameters);
+		assertEquals(result.getPrimary().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getValue(), new BigDecimal("51"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void provisionalReportValidatorTest() throws Exception {
+		AtomicLong nanos = new AtomicLong();
+		seriesExtremesCache = new SeriesExtremesCache(new SimpleMeterRegistry(), 1000000, 600, 0, 1200, 86400, 300, nanos::get);
+		service = new ReportBuilderService(locationDescriptionCache, minMaxBuilderService, timeSeriesDescriptionCache, tsDataService, qualifierMetadataCache, fetchExecutor, seriesExtremesCache, tsChangeService, dailyExtremesStore);
+		Gson gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().create();
+		Controller controller = new Controller(service, null, gson, new ReportValidatorCache(gson, new SimpleMeterRegistry(), seriesExtremesCache, 100, 3600));
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		AtomicReference<Double> value = new AtomicReference<>(5D);
+		willAnswer(invocation -> new TimeSeriesDataServiceResponse()
+			.setPoints(Arrays.asList(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-10T12:00:00Z"))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(String.valueOf(value.get()))
+					.setNumeric(value.get())
+				)
+			))
+			.setApprovals(Arrays.asList(
+				new Approval().setApprovalLevel(900).setStartTime(Instant.parse("2017-10-01T00:00:00Z")).setEndTime(Instant.parse("2018-04-01T00:00:00Z"))
+			))
+		).given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		willAnswer(invocation -> new TimeSeriesUniqueIdListServiceResponse()
+			.setNextToken(Instant.ofEpochSecond(nanos.get()))
+			.setTimeSeriesUniqueIds(new ArrayList<>(Arrays.asList(
+				new TimeSeriesUniqueIds().setUniqueId("primaryTsId").setFirstPointChanged(Instant.parse("2018-01-10T12:00:00Z"))
+			)))
+		).given(tsChangeService).getChangesSince(eq("loc1"), any(Instant.class));
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		controller.getReportRawData(requestParameters, null, null, response);
+		assertEquals(response.getStatus(), HttpStatus.OK.value());
+		String eTag = response.getHeader(HttpHeaders.ETAG);
+
+		// Answered from the remembered ETag while the provisional series is within its lifetime
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(599));
+		response = new MockHttpServletResponse();
+		controller.getReportRawData(requestParameters, eTag, null, response);
+		assertEquals(response.getStatus(), HttpStatus.NOT_MODIFIED.value());
+		verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+
+		// Edited in AQUARIUS, and asked for again once the series lifetime has passed
+		value.set(7D);
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		response = new MockHttpServletResponse();
+		controller.getReportRawData(requestParameters, eTag, null, response);
+		assertEquals(response.getStatus(), HttpStatus.OK.value());
+		assertNotEquals(response.getHeader(HttpHeaders.ETAG), eTag);
+		assertTrue(response.getContentAsString().contains("7.0"));
+		assertFalse(response.getContentAsString().contains("5.0"));
+		verify(tsDataService, times(2)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportDailyStoreTest() {
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc, upchainDesc)
+		);
+		// A value per day, approved until the middle of February 2018, recording what is fetched
+		List<String> fetches = Collections.synchronizedList(new ArrayList<>());
+		AtomicReference<Instant> approvedAt = new AtomicReference<>(Instant.parse("2018-02-20T00:00:00Z"));
+		willAnswer(invocation -> getDailyData(invocation, false, fetches, approvedAt.get()))
+			.given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), any());
+		willAnswer(invocation -> getDailyData(invocation, true, fetches, approvedAt.get()))
+			.given(tsDataService).get(eq("upchainTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), any());
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+		requestParameters.setUpchainTimeseriesIdentifier("upchainTsId");
+		requestParameters.setStartDate(LocalDate.parse("2017-01-01"));
+		requestParameters.setEndDate(LocalDate.parse("2018-03-01"));
+		ExtremesReport expected = service.buildReport(requestParameters, "test-user");
+		assertEquals(expected.getPrimary().getMin().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).size(), 2);
+
+		// The first report fetches every day, storing the approved ones
+		DailyExtremesStore store = new DailyExtremesStore(folder.getRoot().getPath(), 366);
+		fetches.clear();
+		ExtremesReport result = newDailyStoreService(store).buildReport(requestParameters, "test-user");
+		assertReportEquals(result, expected);
+		Collections.sort(fetches);
+		assertEquals(fetches, Arrays.asList(
+			"primaryTsId 2017-01-01 2018-03-01",
+			"primaryTsId 2017-01-01 2018-03-01 MetadataOnly",
+			"upchainTsId 2017-01-01 2018-03-01",
+			"upchainTsId 2017-01-01 2018-03-01 MetadataOnly"
+		));
+
+		// The next only fetches the days that are not approved and the days related points fall on
+		fetches.clear();
+		ReportBuilderService storeService = newDailyStoreService(store);
+		result = storeService.buildReport(requestParameters, "test-user");
+		assertReportEquals(result, expected);
+		Collections.sort(fetches);
+		assertEquals(fetches, Arrays.asList(
+			"primaryTsId 2017-01-01 2017-01-01",
+			"primaryTsId 2017-01-01 2018-03-01 MetadataOnly",
+			"primaryTsId 2017-12-31 2018-01-01",
+			"primaryTsId 2018-02-15 2018-03-01",
+			"upchainTsId 2017-01-01 2017-01-01",
+			"upchainTsId 2017-01-01 2018-03-01 MetadataOnly",
+			"upchainTsId 2017-12-31 2018-01-01",
+			"upchainTsId 2018-02-15 2018-03-01"
+		));
+
+		// The cached series keep the days related points fall on
+		fetches.clear();
+		result = storeService.buildReport(requestParameters, "test-user");
+		assertReportEquals(result, expected);
+		assertTrue(fetches.isEmpty());
+
+		// Days approved again since they were stored are fetched again
+		approvedAt.set(Instant.parse("2018-03-05T00:00:00Z"));
+		fetches.clear();
+		result = newDailyStoreService(store).buildReport(requestParameters, "test-user");
+		assertReportEquals(result, expected);
+		Collections.sort(fetches);
+		assertEquals(fetches, Arrays.asList(
+			"primaryTsId 2017-01-01 2018-03-01",
+			"primaryTsId 2017-01-01 2018-03-01 MetadataOnly",
+			"upchainTsId 2017-01-01 2018-03-01",
+			"upchainTsId 2017-01-01 2018-03-01 MetadataOnly"
+		));
+	}
+
+	private ReportBuilderService newDailyStoreService(DailyExtremesStore store) {
+		seriesExtremesCache = new SeriesExtremesCache(new SimpleMeterRegistry(), 1000000, 600, 0, 1200, 86400, 300);
+		return new ReportBuilderService(locationDescriptionCache, minMaxBuilderService, timeSeriesDescriptionCache, tsDataService, qualifierMetadataCache, fetchExecutor, seriesExtremesCache, tsChangeService, store);
+	}
+
+	// Primary values are the day of the year, upchain values fall as the year goes on
+	private TimeSeriesDataServiceResponse getDailyData(InvocationOnMock invocation, boolean isUpchain, List<String> fetches, Instant approvedAt) {
+		ExtremesRequestParameters params = (ExtremesRequestParameters) invocation.getArguments()[1];
+		String getParts = (String) invocation.getArguments()[6];
+		fetches.add(invocation.getArguments()[0] + " " + params.getStartDate() + " " + params.getEndDate() + (getParts == null ? "" : " " + getParts));
+		List<TimeSeriesPoint> points = new ArrayList<>();
+		for(LocalDate day = params.getStartDate(); getParts == null && !day.isAfter(params.getEndDate()); day = day.plusDays(1)) {
+			int value = isUpchain ? 1000 - day.getDayOfYear() : day.getDayOfYear();
+			points.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(day.atTime(12, 0).toInstant(ZoneOffset.UTC))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(String.valueOf(value))
+					.setNumeric((double) value)
+				)
+			);
+		}
+		return new TimeSeriesDataServiceResponse()
+			.setPoints(points)
+			.setQualifiers(quals1)
+			.setApprovals(Arrays.asList(
+				new Approval().setApprovalLevel(1200).setStartTime(Instant.parse("2016-10-01T00:00:00Z")).setEndTime(Instant.parse("2018-02-15T00:00:00Z")).setDateAppliedUtc(approvedAt),
+				new Approval().setApprovalLevel(900).setStartTime(Instant.parse("2018-02-15T00:00:00Z")).setEndTime(Instant.parse("2018-04-01T00:00:00Z"))
+			));
+	}
+
+	private void assertReportEquals(ExtremesReport actual, ExtremesReport expected) {
+		assertMinMaxEquals(actual.getPrimary(), expected.getPrimary());
+		assertMinMaxEquals(actual.getUpchain(), expected.getUpchain());
+	}
+
+	private void assertMinMaxEquals(ExtremesMinMax actual, ExtremesMinMax expected) {
+		for(Map<String, List<ExtremesPoint>> side : Arrays.asList(actual.getMax(), actual.getMin())) {
+			Map<String, List<ExtremesPoint>> expectedSide = side == actual.getMax() ? expected.getMax() : expected.getMin();
+			assertEquals(side.keySet(), expectedSide.keySet());
+			for(String key : side.keySet()) {
+				assertEquals(side.get(key).stream().map(p -> p.getTime() + " " + p.getValue()).collect(Collectors.toList()),
+					expectedSide.get(key).stream().map(p -> p.getTime() + " " + p.getValue()).collect(Collectors.toList()));
+			}
+		}
+		assertEquals(actual.getMultipleMaxFlag(), expected.getMultipleMaxFlag());
+		assertEquals(actual.getMultipleMinFlag(), expected.getMultipleMinFlag());
+		assertEquals(actual.getQualifiers().size(), expected.getQualifiers().size());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildReportCoalescedTest() throws Exception {
+		CountDownLatch fetchStarted = new CountDownLatch(1);
+		CountDownLatch releaseFetch = new CountDownLatch(1);
+		timeSeriesDescriptionCache = spy(timeSeriesDescriptionCache);
+		service = new ReportBuilderService(locationDescriptionCache, minMaxBuilderService, timeSeriesDescriptionCache, tsDataService, qualifierMetadataCache, fetchExecutor, seriesExtremesCache, tsChangeService, dailyExtremesStore);
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc)
+		);
+		willAnswer(invocation -> {
+			fetchStarted.countDown();
+			assertTrue(releaseFetch.await(10, TimeUnit.SECONDS));
+			return new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(quals1);
+		}).given(tsDataService).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
+		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
+			new LocationDescription()
+				.setIdentifier("loc1")
+				.setUniqueId("loc1")
+				.setName("loc1")
+		);
+
+		ExecutorService requests = Executors.newFixedThreadPool(2);
+		try {
+			Future<ExtremesReport> first = requests.submit(() -> service.buildReport(requestParameters, "user1"));
+			assertTrue(fetchStarted.await(10, TimeUnit.SECONDS));
+
+			// An identical request from another user, with the same period given another way
+			ExtremesRequestParameters sameParameters = new ExtremesRequestParameters();
+			sameParameters.setStartDate(requestParameters.getStartDate());
+			sameParameters.setEndDate(requestParameters.getEndDate());
+			sameParameters.setPrimaryTimeseriesIdentifier("primaryTsId");
+			Thread[] secondThread = new Thread[1];
+			Future<ExtremesReport> second = requests.submit(() -> {
+				secondThread[0] = Thread.currentThread();
+				return service.buildReport(sameParameters, "user2");
+			});
+			while(secondThread[0] == null || secondThread[0].getState() != Thread.State.WAITING) {
+				Thread.sleep(10);
+			}
+			releaseFetch.countDown();
+
+			ExtremesReport firstReport = first.get(10, TimeUnit.SECONDS);
+			ExtremesReport secondReport = second.get(10, TimeUnit.SECONDS);
+			verify(timeSeriesDescriptionCache, times(1)).getTimeSeriesDescriptions(any());
+			verify(tsDataService, times(1)).get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null));
+			assertSame(firstReport.getPrimary(), secondReport.getPrimary());
+			assertEquals(firstReport.getReportMetadata().getRequestingUser(), "user1");
+			assertEquals(secondReport.getReportMetadata().getRequestingUser(), "user2");
+			assertEquals(secondReport.getReportMetadata().getRequestParameters(), sameParameters);
+			assertEquals(secondReport.getReportMetadata().getStationName(), "loc1");
+		} finally {
+			requests.shutdownNow();
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	@SuppressWarnings("unchecked")
+	public void buildReportFetchErrorTest() {
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willReturn(
+			Arrays.asList(primaryDesc, upchainDesc)
+		);
+		given(tsDataService.get(eq("primaryTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null))).willReturn(
+			new TimeSeriesDataServiceResponse()
+				.setPoints(primaryPoints)
+				.setQualifiers(quals1)
+		);
+		given(tsDataService.get(eq("upchainTsId"), any(ExtremesRequestParameters.class), eq(ZoneOffset.UTC), eq(false), eq(false), eq(false), eq(null))).willThrow(
+			new IllegalStateException("upchain fetch failed")
+		);
+		requestParameters.setUpchainTimeseriesIdentifier("upchainTsId");
+
+		service.buildReport(requestParameters, "test-user");
+	}
+
 	@Test
 	public void getExtremesPointsTest() {
 		List<ExtremesPoint> result = service.getExtremesPoints(primaryPoints, false, ZoneOffset.UTC);
@@ -802,9 +1399,7 @@ public class ReportBuilderServiceTest {
 	@Test
 	@SuppressWarnings("unchecked")
 	public void getReportMetadataFullTest() {
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -835,15 +1430,15 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getUpchainParameter(), upchainDesc.getParameter());
 		assertEquals(result.getUpchainLabel(), upchainDesc.getIdentifier());
 		assertEquals(result.getUpchainUnit(), upchainDesc.getUnit());
-		assertEquals(result.getQualifierMetadata(), qualMetadata);
+		assertEquals(result.getQualifierMetadata().size(), 2);
+		assertEquals(result.getQualifierMetadata().get("qual1"), qualMetadata.get("qual1"));
+		assertEquals(result.getQualifierMetadata().get("qual2"), qualMetadata.get("qual2"));
 	}
 
 	@Test
 	@SuppressWarnings("unchecked")
 	public void getReportMetadataNoQualsTest() {
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -880,9 +1475,7 @@ public class ReportBuilderServiceTest {
 	@Test
 	@SuppressWarnings("unchecked")
 	public void getReportMetadataNoUpchainTest() {
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -911,15 +1504,15 @@ public class ReportBuilderServiceTest {
 		assertNull(result.getUpchainParameter());
 		assertNull(result.getUpchainLabel());
 		assertNull(result.getUpchainUnit());
-		assertEquals(result.getQualifierMetadata(), qualMetadata);
+		assertEquals(result.getQualifierMetadata().size(), 2);
+		assertEquals(result.getQualifierMetadata().get("qual1"), qualMetadata.get("qual1"));
+		assertEquals(result.getQualifierMetadata().get("qual2"), qualMetadata.get("qual2"));
 	}
 
 	@Test
 	@SuppressWarnings("unchecked")
 	public void getReportMetadataNoDerivedTest() {
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -948,15 +1541,15 @@ public class ReportBuilderServiceTest {
 		assertEquals(result.getUpchainParameter(), upchainDesc.getParameter());
 		assertEquals(result.getUpchainLabel(), upchainDesc.getIdentifier());
 		assertEquals(result.getUpchainUnit(), upchainDesc.getUnit());
-		assertEquals(result.getQualifierMetadata(), qualMetadata);
+		assertEquals(result.getQualifierMetadata().size(), 2);
+		assertEquals(result.getQualifierMetadata().get("qual1"), qualMetadata.get("qual1"));
+		assertEquals(result.getQualifierMetadata().get("qual2"), qualMetadata.get("qual2"));
 	}
 	
 	@Test
 	@SuppressWarnings("unchecked")
 	public void getReportMetadataEmptyTest() {
-		given(qualLookupService.getByQualifierList(any(List.class))).willReturn(
-			qualMetadata
-		);
+		given(qualLookupService.getByQualifierList(any(List.class))).willAnswer(this::getQualifierMetadata);
 		given(locDescService.getByLocationIdentifier(any(String.class))).willReturn(
 			new LocationDescription()
 				.setIdentifier("loc1")
@@ -983,6 +1576,8 @@ public class ReportBuilderServiceTest {
 		assertNull(result.getUpchainParameter());
 		assertNull(result.getUpchainLabel());
 		assertNull(result.getUpchainUnit());
-		assertEquals(result.getQualifierMetadata(), qualMetadata);
+		assertEquals(result.getQualifierMetadata().size(), 2);
+		assertEquals(result.getQualifierMetadata().get("qual1"), qualMetadata.get("qual1"));
+		assertEquals(result.getQualifierMetadata().get("qual2"), qualMetadata.get("qual2"));
     }
 }
\ No newline at end of file
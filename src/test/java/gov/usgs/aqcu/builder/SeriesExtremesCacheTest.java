@@ -0,0 +1,325 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Approval;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.usgs.aqcu.model.TimeSeriesMinMax;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SeriesExtremesCacheTest {
+	private MeterRegistry meterRegistry;
+	private SeriesExtremesCache cache;
+	private AtomicInteger loads;
+	private AtomicLong nanos;
+	private AtomicInteger revalidations;
+	private Instant token;
+
+	@Before
+	public void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		nanos = new AtomicLong();
+		cache = new SeriesExtremesCache(meterRegistry, 100, 600, 0, 1200, 86400, 300, nanos::get);
+		loads = new AtomicInteger();
+		revalidations = new AtomicInteger();
+	}
+
+	@Test
+	public void getTest() {
+		SeriesExtremes first = get(key("ts1"), k -> load(10)).join();
+		SeriesExtremes second = get(key("ts1"), k -> load(10)).join();
+		assertSame(first, second);
+		assertEquals(loads.get(), 1);
+
+		get(key("ts2"), k -> load(10)).join();
+		assertEquals(loads.get(), 2);
+		assertEquals(meterRegistry.get("cache.gets").tag("cache", SeriesExtremesCache.CACHE_NAME).tag("result", "hit").functionCounter().count(), 1D, 0D);
+		assertEquals(meterRegistry.get("cache.gets").tag("cache", SeriesExtremesCache.CACHE_NAME).tag("result", "miss").functionCounter().count(), 2D, 0D);
+	}
+
+	@Test
+	public void weightTest() {
+		get(key("ts1"), k -> load(60)).join();
+		get(key("ts2"), k -> load(60)).join();
+		get(key("ts3"), k -> load(60)).join();
+		cache.cleanUp();
+		// No more than one 60 point series fits within 100 points
+		assertEquals(meterRegistry.get("cache.evictions").tag("cache", SeriesExtremesCache.CACHE_NAME).functionCounter().count(), 2D, 0D);
+		assertEquals(meterRegistry.get("cache.size").tag("cache", SeriesExtremesCache.CACHE_NAME).gauge().value(), 1D, 0D);
+	}
+
+	@Test
+	public void emptyNotCachedTest() {
+		assertNull(get(key("ts1"), k -> { loads.incrementAndGet(); return CompletableFuture.completedFuture(null); }).join());
+		assertEquals(get(key("ts1"), k -> load(10)).join().getColumns().size(), 10);
+		assertEquals(loads.get(), 2);
+	}
+
+	@Test
+	public void failureNotCachedTest() {
+		CompletableFuture<SeriesExtremes> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("fetch failed"));
+		try {
+			get(key("ts1"), k -> failed).join();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(get(key("ts1"), k -> load(10)).join().getColumns().size(), 10);
+		assertEquals(loads.get(), 1);
+	}
+
+	@Test
+	public void rejectedNotCachedTest() {
+		try {
+			get(key("ts1"), k -> { throw new RejectedExecutionException("saturated"); });
+			fail();
+		} catch (RejectedExecutionException e) {
+			assertEquals(e.getMessage(), "saturated");
+		}
+		assertEquals(get(key("ts1"), k -> load(10)).join().getColumns().size(), 10);
+
+		// A revalidation that cannot be started keeps the cached series
+		token = Instant.parse("2018-02-01T00:00:00Z");
+		SeriesExtremes first = get(key("ts2"), k -> load(10)).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		try {
+			cache.get(key("ts2"), k -> load(10), (k, cached) -> { throw new RejectedExecutionException("saturated"); });
+			fail();
+		} catch (RejectedExecutionException e) {
+			assertEquals(e.getMessage(), "saturated");
+		}
+		assertEquals(cache.getDataVersion(), 1L);
+		SeriesExtremes second = get(key("ts2"), k -> load(10)).join();
+		assertNotSame(second, first);
+		assertEquals(revalidations.get(), 1);
+		assertEquals(loads.get(), 3);
+	}
+
+	@Test
+	public void provisionalExpiryTest() {
+		SeriesExtremes first = get(key("ts1"), k -> load(10, approval(900, "2018-01-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(599));
+		assertSame(get(key("ts1"), k -> load(10)).join(), first);
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertNotSame(get(key("ts1"), k -> load(10)).join(), first);
+		assertEquals(loads.get(), 2);
+	}
+
+	@Test
+	public void revalidateTest() {
+		token = Instant.parse("2018-02-01T00:00:00Z");
+		SeriesExtremes first = get(key("ts1"), k -> load(10, approval(900, "2018-01-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(599));
+		assertSame(get(key("ts1"), k -> load(10)).join(), first);
+		assertEquals(revalidations.get(), 0);
+
+		// Kept past its short lifetime, but revalidated before it is used
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		SeriesExtremes second = get(key("ts1"), k -> load(10)).join();
+		assertNotSame(second, first);
+		assertEquals(revalidations.get(), 1);
+		assertFalse(cache.needsRevalidation(key("ts1"), second));
+		assertSame(get(key("ts1"), k -> load(10)).join(), second);
+		assertEquals(revalidations.get(), 1);
+
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(86401));
+		assertNotSame(get(key("ts1"), k -> load(10)).join(), second);
+		assertEquals(revalidations.get(), 1);
+		assertEquals(loads.get(), 3);
+	}
+
+	@Test
+	public void revalidateSharedTest() {
+		token = Instant.parse("2018-02-01T00:00:00Z");
+		get(key("ts1"), k -> load(10)).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+
+		CompletableFuture<SeriesExtremes> revalidation = new CompletableFuture<>();
+		CompletableFuture<SeriesExtremes> first = cache.get(key("ts1"), k -> load(10), (k, cached) -> revalidation);
+		CompletableFuture<SeriesExtremes> second = cache.get(key("ts1"), k -> load(10), (k, cached) -> load(10));
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+		revalidation.complete(load(10).join());
+		assertSame(first.join(), second.join());
+		assertEquals(loads.get(), 2);
+	}
+
+	@Test
+	public void dataVersionTest() {
+		token = Instant.parse("2018-02-01T00:00:00Z");
+		SeriesExtremes first = get(key("ts1"), k -> load(10)).join();
+		get(key("ts1"), k -> load(10)).join();
+		assertEquals(cache.getDataVersion(), 0L);
+
+		// Past its short lifetime, so it may have changed in AQUARIUS, even before it is revalidated
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		assertEquals(cache.getDataVersion(), 1L);
+		assertEquals(cache.getDataVersion(), 1L);
+
+		// Revalidated as unchanged
+		SeriesExtremes second = cache.get(key("ts1"), k -> load(10), (k, cached) -> CompletableFuture.completedFuture(cached.withChangesSinceToken(token))).join();
+		assertNotSame(second, first);
+		assertEquals(cache.getDataVersion(), 1L);
+
+		// Revalidated into different data
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(601));
+		assertEquals(cache.getDataVersion(), 2L);
+		get(key("ts1"), k -> load(10)).join();
+		assertEquals(cache.getDataVersion(), 3L);
+
+		// Evicted by size
+		get(key("ts2"), k -> load(60)).join();
+		get(key("ts3"), k -> load(60)).join();
+		cache.cleanUp();
+		assertTrue(cache.getDataVersion() > 1L);
+
+		// Not kept
+		long version = cache.getDataVersion();
+		get(key("ts4"), k -> CompletableFuture.completedFuture(null)).join();
+		assertTrue(cache.getDataVersion() > version);
+	}
+
+	@Test
+	public void dataVersionApprovedTest() {
+		get(key("ts1"), k -> load(10, approval(1200, "2017-10-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(86400));
+		assertEquals(cache.getDataVersion(), 0L);
+	}
+
+	@Test
+	public void approvedExpiryTest() {
+		SeriesExtremes first = get(key("ts1"), k -> load(10, approval(1200, "2017-01-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		nanos.addAndGet(TimeUnit.DAYS.toNanos(3650));
+		assertSame(get(key("ts1"), k -> load(10)).join(), first);
+		assertEquals(loads.get(), 1);
+
+		cache = new SeriesExtremesCache(meterRegistry, 100, 600, 86400, 1200, 86400, 300, nanos::get);
+		first = get(key("ts1"), k -> load(10, approval(1200, "2017-01-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(86399));
+		assertSame(get(key("ts1"), k -> load(10)).join(), first);
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertNotSame(get(key("ts1"), k -> load(10)).join(), first);
+		assertEquals(loads.get(), 3);
+	}
+
+	@Test
+	public void isApprovedTest() {
+		SeriesKey key = key("ts1");
+		assertFalse(cache.isApproved(key, Arrays.asList()));
+		assertFalse(cache.isApproved(key, Arrays.asList(approval(1000, "2018-01-01T00:00:00Z", "2018-02-01T00:00:00Z"))));
+		assertTrue(cache.isApproved(key, Arrays.asList(approval(1200, "2018-01-01T00:00:00Z", "2018-02-01T00:00:00Z"))));
+		assertTrue(cache.isApproved(key, Arrays.asList(
+			approval(1200, "2018-01-15T00:00:00Z", "2019-01-01T00:00:00Z"),
+			approval(900, "2017-01-01T00:00:00Z", "2017-06-01T00:00:00Z"),
+			approval(1200, "2017-06-01T00:00:00Z", "2018-01-15T00:00:00Z")
+		)));
+		// Provisional data at the end of the period
+		assertFalse(cache.isApproved(key, Arrays.asList(
+			approval(1200, "2017-06-01T00:00:00Z", "2018-01-15T00:00:00Z"),
+			approval(900, "2018-01-15T00:00:00Z", "2019-01-01T00:00:00Z")
+		)));
+		// A gap in the approvals
+		assertFalse(cache.isApproved(key, Arrays.asList(
+			approval(1200, "2017-06-01T00:00:00Z", "2018-01-15T00:00:00Z"),
+			approval(1200, "2018-01-16T00:00:00Z", "2019-01-01T00:00:00Z")
+		)));
+		// Approvals ending before the end of the period
+		assertFalse(cache.isApproved(key, Arrays.asList(approval(1200, "2018-01-01T00:00:00Z", "2018-01-31T00:00:00Z"))));
+	}
+
+	@Test
+	public void getChangesSinceTokenTest() {
+		SeriesKey key = key("ts1");
+		Instant fetchedAt = Instant.parse("2018-02-01T12:00:00Z");
+		assertEquals(cache.getChangesSinceToken(key, Arrays.asList(approval(900, "2018-01-01T00:00:00Z", "2018-02-01T00:00:00Z")), fetchedAt), 
+			Instant.parse("2018-02-01T11:55:00Z"));
+		// Approved series are never revalidated
+		assertNull(cache.getChangesSinceToken(key, Arrays.asList(approval(1200, "2018-01-01T00:00:00Z", "2018-02-01T00:00:00Z")), fetchedAt));
+	}
+
+	@Test
+	public void getApprovedSegmentsTest() {
+		get(key("ts1"), k -> load(10, 
+			approval(1200, "2017-10-01T00:00:00Z", "2018-01-10T00:00:00Z"), 
+			approval(1200, "2018-01-10T00:00:00Z", "2018-01-20T12:00:00Z"), 
+			approval(900, "2018-01-20T12:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		get(key("ts2"), k -> load(10, approval(1200, "2017-10-01T00:00:00Z", "2018-03-01T00:00:00Z"))).join();
+		SeriesKey later = new SeriesKey("ts1", Instant.parse("2018-01-15T00:00:00Z"), Instant.parse("2018-03-01T00:00:00Z"), ZoneOffset.UTC, false);
+
+		List<SeriesSegment> segments = cache.getApprovedSegments(later);
+		assertEquals(segments.size(), 1);
+		assertEquals(segments.get(0).getStartDate(), LocalDate.parse("2018-01-01"));
+		assertEquals(segments.get(0).getEndDate(), LocalDate.parse("2018-01-19"));
+		assertTrue(segments.get(0).isLoaded());
+
+		assertTrue(cache.getApprovedSegments(new SeriesKey("ts1", Instant.parse("2018-02-02T00:00:00Z"), Instant.parse("2018-03-01T00:00:00Z"), ZoneOffset.UTC, false)).isEmpty());
+		assertTrue(cache.getApprovedSegments(new SeriesKey("ts1", later.getStartTime(), later.getEndTime(), ZoneOffset.UTC, true)).isEmpty());
+		assertTrue(cache.getApprovedSegments(new SeriesKey("ts3", later.getStartTime(), later.getEndTime(), ZoneOffset.UTC, false)).isEmpty());
+	}
+
+	private SeriesKey key(String uniqueId) {
+		return new SeriesKey(uniqueId, Instant.parse("2018-01-01T00:00:00Z"), Instant.parse("2018-02-01T00:00:00Z"), ZoneOffset.UTC, false);
+	}
+
+	private Approval approval(int level, String start, String end) {
+		return new Approval().setApprovalLevel(level).setStartTime(Instant.parse(start)).setEndTime(Instant.parse(end));
+	}
+
+	private SeriesExtremes series(Approval... approvals) {
+		return new SeriesExtremes(ZoneOffset.UTC, false, TimeSeriesColumns.of(null), new TimeSeriesMinMax(), new ArrayList<>(), Arrays.asList(approvals), null);
+	}
+
+	private CompletableFuture<SeriesExtremes> load(int size, Approval... approvals) {
+		loads.incrementAndGet();
+		List<TimeSeriesPoint> points = new ArrayList<>();
+		for(int i = 0; i < size; i++) {
+			points.add(new TimeSeriesPoint()
+				.setTimestamp(new StatisticalDateTimeOffset()
+					.setDateTimeOffset(Instant.parse("2018-01-01T00:00:00Z").plusSeconds(900L * i))
+					.setRepresentsEndOfTimePeriod(false)
+				)
+				.setValue(new DoubleWithDisplay()
+					.setDisplay(String.valueOf(i))
+					.setNumeric((double) i)
+				)
+			);
+		}
+		return CompletableFuture.completedFuture(new SeriesExtremes(ZoneOffset.UTC, false, TimeSeriesColumns.of(points), new TimeSeriesMinMax(), new ArrayList<>(), 
+			Arrays.asList(approvals), token));
+	}
+
+	// Revalidates by loading the series again
+	private CompletableFuture<SeriesExtremes> get(SeriesKey key, Function<SeriesKey, CompletableFuture<SeriesExtremes>> loader) {
+		return cache.get(key, loader, (k, cached) -> {
+			revalidations.incrementAndGet();
+			return loader.apply(k);
+		});
+	}
+}
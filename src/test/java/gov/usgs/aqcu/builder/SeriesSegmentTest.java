@@ -0,0 +1,127 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.Qualifier;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Test;
+
+public class SeriesSegmentTest {
+	private static final ZoneOffset ZONE = ZoneOffset.ofHours(-5);
+
+	@Test
+	public void planMissingTest() {
+		List<SeriesSegment> result = SeriesSegment.plan(key("2018-01-01", "2018-12-31"), new ArrayList<>());
+		assertEquals(result.size(), 1);
+		assertSegment(result.get(0), "2018-01-01", "2018-12-31", false);
+	}
+
+	@Test
+	public void planTest() {
+		List<SeriesSegment> loaded = Arrays.asList(
+			loaded("2017-10-01", "2018-03-31"),
+			loaded("2018-03-01", "2018-04-30"),
+			loaded("2018-06-01", "2018-06-30"),
+			loaded("2019-01-01", "2019-06-30")
+		);
+		List<SeriesSegment> result = SeriesSegment.plan(key("2018-01-01", "2018-12-31"), loaded);
+		assertEquals(result.size(), 5);
+		assertSegment(result.get(0), "2018-01-01", "2018-03-31", true);
+		assertSegment(result.get(1), "2018-04-01", "2018-04-30", true);
+		assertSegment(result.get(2), "2018-05-01", "2018-05-31", false);
+		assertSegment(result.get(3), "2018-06-01", "2018-06-30", true);
+		assertSegment(result.get(4), "2018-07-01", "2018-12-31", false);
+	}
+
+	@Test
+	public void planCoveredTest() {
+		List<SeriesSegment> result = SeriesSegment.plan(key("2018-01-01", "2018-01-31"), Arrays.asList(loaded("2017-10-01", "2018-09-30")));
+		assertEquals(result.size(), 1);
+		assertSegment(result.get(0), "2018-01-01", "2018-01-31", true);
+	}
+
+	@Test
+	public void joinTest() {
+		TimeSeriesPoint endOfDay = point("2018-01-03T05:00:00Z", 3.0D);
+		endOfDay.getTimestamp().setRepresentsEndOfTimePeriod(true);
+		TimeSeriesColumns cached = TimeSeriesColumns.of(Arrays.asList(
+			point("2017-12-31T12:00:00Z", 0.0D),
+			point("2018-01-01T12:00:00Z", 1.0D),
+			point("2018-01-02T12:00:00Z", 2.0D),
+			endOfDay
+		));
+		TimeSeriesColumns fetched = TimeSeriesColumns.of(Arrays.asList(point("2018-01-03T12:00:00Z", 4.0D)));
+		Qualifier spanning = qualifier("spanning", "2017-12-01T00:00:00Z", "2018-02-01T00:00:00Z");
+		Qualifier before = qualifier("before", "2017-12-01T00:00:00Z", "2017-12-31T00:00:00Z");
+		Qualifier later = qualifier("later", "2018-01-03T06:00:00Z", "2018-01-03T07:00:00Z");
+		List<SeriesSegment> segments = Arrays.asList(
+			new SeriesSegment(LocalDate.parse("2018-01-01"), LocalDate.parse("2018-01-02"), cached, Arrays.asList(before, spanning, later), null),
+			new SeriesSegment(LocalDate.parse("2018-01-03"), LocalDate.parse("2018-01-03"), fetched, 
+				Arrays.asList(qualifier("spanning", "2017-12-01T00:00:00Z", "2018-02-01T00:00:00Z"), later), new ArrayList<>())
+		);
+
+		TimeSeriesColumns columns = SeriesSegment.joinColumns(segments, ZONE);
+		assertEquals(columns.size(), 4);
+		assertEquals(columns.getValue(0), 1.0D, 0D);
+		assertEquals(columns.getValue(1), 2.0D, 0D);
+		assertEquals(columns.getValue(2), 3.0D, 0D);
+		assertEquals(columns.getValue(3), 4.0D, 0D);
+
+		List<Qualifier> qualifiers = SeriesSegment.joinQualifiers(segments, ZONE);
+		assertEquals(qualifiers.size(), 2);
+		assertEquals(qualifiers.get(0).getIdentifier(), "spanning");
+		assertEquals(qualifiers.get(1).getIdentifier(), "later");
+		assertTrue(SeriesSegment.joinApprovals(segments, ZONE).isEmpty());
+	}
+
+	private void assertSegment(SeriesSegment segment, String startDate, String endDate, boolean loaded) {
+		assertEquals(segment.getStartDate(), LocalDate.parse(startDate));
+		assertEquals(segment.getEndDate(), LocalDate.parse(endDate));
+		assertEquals(segment.isLoaded(), loaded);
+	}
+
+	private SeriesKey key(String startDate, String endDate) {
+		return new SeriesKey("ts1", 
+			LocalDate.parse(startDate).atStartOfDay().toInstant(ZONE), 
+			LocalDate.parse(endDate).atTime(23, 59, 59, 999999999).toInstant(ZONE), 
+			ZONE, false);
+	}
+
+	private SeriesSegment loaded(String startDate, String endDate) {
+		SeriesSegment result = new SeriesSegment(LocalDate.parse(startDate), LocalDate.parse(endDate), TimeSeriesColumns.of(null), null, null);
+		assertFalse(SeriesSegment.missing(result.getStartDate(), result.getEndDate()).isLoaded());
+		return result;
+	}
+
+	private Qualifier qualifier(String identifier, String start, String end) {
+		Qualifier result = new Qualifier();
+		result.setIdentifier(identifier);
+		result.setStartTime(Instant.parse(start));
+		result.setEndTime(Instant.parse(end));
+		return result;
+	}
+
+	private TimeSeriesPoint point(String time, Double value) {
+		return new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse(time))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay(value.toString())
+				.setNumeric(value)
+			);
+	}
+}
@@ -0,0 +1,194 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.DoubleWithDisplay;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.StatisticalDateTimeOffset;
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesPoint;
+
+import org.junit.Test;
+
+public class TimeSeriesColumnsTest {
+
+	@Test
+	public void getTest() {
+		List<TimeSeriesPoint> pointList = Arrays.asList(
+			point("1960-01-01T00:00:00Z", 1.0D),
+			point("2018-01-01T00:00:00.000000100Z", 2.0D),
+			point("2018-01-01T00:00:00.000000200Z", 3.0D),
+			point("2018-01-02T00:00:00Z", 4.0D)
+		);
+
+		TimeSeriesColumns columns = TimeSeriesColumns.of(pointList);
+		assertEquals(columns.size(), 4);
+		for(int i = 0; i < pointList.size(); i++) {
+			TimeSeriesPoint point = pointList.get(i);
+			assertEquals(columns.indexOf(point.getTimestamp().getDateTimeOffset()), i);
+			assertSamePoint(point, columns.get(point.getTimestamp().getDateTimeOffset()));
+		}
+		assertNull(columns.get(Instant.parse("2018-01-01T00:00:00Z")));
+		assertNull(columns.get(Instant.parse("2018-01-01T00:00:00.000000150Z")));
+		assertNull(columns.get(Instant.parse("1900-01-01T00:00:00Z")));
+		assertNull(columns.get(Instant.parse("2100-01-01T00:00:00Z")));
+	}
+
+	@Test
+	public void getUnsortedTest() {
+		List<TimeSeriesPoint> pointList = Arrays.asList(
+			point("2018-01-03T00:00:00Z", 1.0D),
+			point("2018-01-01T00:00:00Z", 2.0D),
+			point("2018-01-02T00:00:00Z", 3.0D)
+		);
+
+		TimeSeriesColumns columns = TimeSeriesColumns.of(pointList);
+		for(int i = 0; i < pointList.size(); i++) {
+			TimeSeriesPoint point = pointList.get(i);
+			assertEquals(columns.indexOf(point.getTimestamp().getDateTimeOffset()), i);
+			assertSamePoint(point, columns.get(point.getTimestamp().getDateTimeOffset()));
+		}
+		assertEquals(columns.getValue(0), 1.0D, 0D);
+	}
+
+	@Test
+	public void getPointTest() {
+		TimeSeriesPoint endOfPeriod = point("2018-01-01T00:00:00Z", 1.0D);
+		endOfPeriod.getTimestamp().setRepresentsEndOfTimePeriod(true);
+		TimeSeriesPoint noNumeric = new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-01-02T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay("EQP")
+			);
+		TimeSeriesPoint noValue = new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-01-03T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			);
+
+		TimeSeriesColumns columns = TimeSeriesColumns.of(Arrays.asList(endOfPeriod, noNumeric, noValue));
+		assertSamePoint(endOfPeriod, columns.getPoint(0));
+		assertEquals(columns.getPoint(0).getTimestamp().RepresentsEndOfTimePeriod, true);
+		assertSamePoint(noNumeric, columns.getPoint(1));
+		assertTrue(Double.isNaN(columns.getValue(1)));
+		assertNull(columns.getPoint(2).getValue());
+		assertNull(columns.getDisplay(2));
+		assertTrue(Double.isNaN(columns.getValue(2)));
+	}
+
+	@Test
+	public void emptyTest() {
+		assertTrue(TimeSeriesColumns.of(null).isEmpty());
+		assertTrue(TimeSeriesColumns.of(Arrays.asList()).isEmpty());
+		assertNull(TimeSeriesColumns.of(null).get(Instant.parse("2018-01-01T00:00:00Z")));
+		assertEquals(TimeSeriesColumns.of(null).indexOf(Instant.parse("2018-01-01T00:00:00Z")), -1);
+	}
+
+	@Test
+	public void getDateTest() {
+		TimeSeriesPoint endOfPeriod = point("2018-01-02T05:00:00Z", 1.0D);
+		endOfPeriod.getTimestamp().setRepresentsEndOfTimePeriod(true);
+		TimeSeriesColumns columns = TimeSeriesColumns.of(Arrays.asList(
+			endOfPeriod,
+			point("2018-01-02T05:00:00Z", 2.0D),
+			point("2018-01-02T04:59:59Z", 3.0D)
+		));
+		ZoneOffset zoneOffset = ZoneOffset.ofHours(-5);
+		assertEquals(columns.getDate(0, zoneOffset), LocalDate.parse("2018-01-01"));
+		assertEquals(columns.getDate(1, zoneOffset), LocalDate.parse("2018-01-02"));
+		assertEquals(columns.getDate(2, zoneOffset), LocalDate.parse("2018-01-01"));
+		assertEquals(columns.getDate(2, ZoneOffset.UTC), LocalDate.parse("2018-01-02"));
+	}
+
+	@Test
+	public void sliceTest() {
+		TimeSeriesColumns columns = TimeSeriesColumns.of(Arrays.asList(
+			point("2018-01-01T00:00:00Z", 1.0D),
+			point("2018-01-01T23:59:59Z", 2.0D),
+			point("2018-01-02T00:00:00Z", 3.0D),
+			point("2018-01-03T12:00:00Z", 4.0D),
+			point("2018-01-04T00:00:00Z", 5.0D)
+		));
+
+		TimeSeriesColumns slice = columns.slice(LocalDate.parse("2018-01-02"), LocalDate.parse("2018-01-03"), ZoneOffset.UTC);
+		assertEquals(slice.size(), 2);
+		assertEquals(slice.getValue(0), 3.0D, 0D);
+		assertEquals(slice.getValue(1), 4.0D, 0D);
+		assertEquals(slice.indexOf(Instant.parse("2018-01-03T12:00:00Z")), 1);
+		assertSame(columns.slice(LocalDate.parse("2017-01-01"), LocalDate.parse("2019-01-01"), ZoneOffset.UTC), columns);
+		assertTrue(columns.slice(LocalDate.parse("2019-01-01"), LocalDate.parse("2019-01-02"), ZoneOffset.UTC).isEmpty());
+	}
+
+	@Test
+	public void afterTest() {
+		TimeSeriesColumns columns = TimeSeriesColumns.of(Arrays.asList(
+			point("2018-01-03T00:00:00Z", 3.0D),
+			point("2018-01-01T00:00:00Z", 1.0D),
+			point("2018-01-02T00:00:00Z", 2.0D)
+		));
+		assertEquals(columns.getLastTime(), Instant.parse("2018-01-03T00:00:00Z"));
+		TimeSeriesColumns after = columns.after(Instant.parse("2018-01-01T00:00:00Z"));
+		assertEquals(after.size(), 2);
+		assertEquals(after.getValue(0), 3.0D, 0D);
+		assertEquals(after.getValue(1), 2.0D, 0D);
+		assertTrue(columns.after(Instant.parse("2018-01-03T00:00:00Z")).isEmpty());
+		assertNull(TimeSeriesColumns.of(null).getLastTime());
+	}
+
+	@Test
+	public void concatTest() {
+		TimeSeriesPoint endOfPeriod = point("2018-01-03T00:00:00Z", 3.0D);
+		endOfPeriod.getTimestamp().setRepresentsEndOfTimePeriod(true);
+		List<TimeSeriesPoint> first = Arrays.asList(point("2018-01-01T00:00:00Z", 1.0D), point("2018-01-02T00:00:00Z", 2.0D));
+		List<TimeSeriesPoint> second = Arrays.asList(endOfPeriod, new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse("2018-01-04T00:00:00Z"))
+				.setRepresentsEndOfTimePeriod(false)
+			));
+
+		TimeSeriesColumns columns = TimeSeriesColumns.concat(Arrays.asList(
+			TimeSeriesColumns.of(first), TimeSeriesColumns.of(null), TimeSeriesColumns.of(second)
+		));
+		assertEquals(columns.size(), 4);
+		assertSamePoint(first.get(0), columns.getPoint(0));
+		assertSamePoint(first.get(1), columns.getPoint(1));
+		assertSamePoint(endOfPeriod, columns.getPoint(2));
+		assertNull(columns.getPoint(3).getValue());
+		assertEquals(columns.indexOf(Instant.parse("2018-01-04T00:00:00Z")), 3);
+		assertTrue(TimeSeriesColumns.concat(Arrays.asList(TimeSeriesColumns.of(null))).isEmpty());
+
+		// Joined out of order
+		columns = TimeSeriesColumns.concat(Arrays.asList(TimeSeriesColumns.of(second), TimeSeriesColumns.of(first)));
+		assertEquals(columns.indexOf(Instant.parse("2018-01-01T00:00:00Z")), 2);
+		assertEquals(columns.indexOf(Instant.parse("2018-01-04T00:00:00Z")), 1);
+	}
+
+	private void assertSamePoint(TimeSeriesPoint expected, TimeSeriesPoint actual) {
+		assertEquals(expected.getTimestamp().getDateTimeOffset(), actual.getTimestamp().getDateTimeOffset());
+		assertEquals(expected.getTimestamp().RepresentsEndOfTimePeriod, actual.getTimestamp().RepresentsEndOfTimePeriod);
+		assertEquals(expected.getValue().getNumeric(), actual.getValue().getNumeric());
+		assertEquals(expected.getValue().getDisplay(), actual.getValue().getDisplay());
+	}
+
+	private TimeSeriesPoint point(String time, Double value) {
+		return new TimeSeriesPoint()
+			.setTimestamp(new StatisticalDateTimeOffset()
+				.setDateTimeOffset(Instant.parse(time))
+				.setRepresentsEndOfTimePeriod(false)
+			)
+			.setValue(new DoubleWithDisplay()
+				.setDisplay(value.toString())
+				.setNumeric(value)
+			);
+	}
+}
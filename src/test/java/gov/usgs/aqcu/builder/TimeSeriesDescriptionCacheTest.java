@@ -0,0 +1,105 @@
+package gov.usgs.aqcu.builder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.aquaticinformatics.aquarius.sdk.timeseries.servicemodels.Publish.TimeSeriesDescription;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import gov.usgs.aqcu.retrieval.TimeSeriesDescriptionListService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TimeSeriesDescriptionCacheTest {
+	private TimeSeriesDescriptionListService tsDescService;
+	private TimeSeriesDescriptionCache cache;
+	private List<Runnable> refreshes;
+	private AtomicLong nanos;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		tsDescService = mock(TimeSeriesDescriptionListService.class);
+		// Returns a description for every requested id except "missing"
+		given(tsDescService.getTimeSeriesDescriptionList(any(List.class))).willAnswer(invocation -> 
+			((List<String>) invocation.getArguments()[0]).stream()
+				.filter(id -> !"missing".equals(id))
+				.map(id -> new TimeSeriesDescription().setUniqueId(id).setIdentifier(id + "@loc"))
+				.collect(Collectors.toList())
+		);
+		refreshes = new ArrayList<>();
+		nanos = new AtomicLong();
+		cache = new TimeSeriesDescriptionCache(tsDescService, refreshes::add, new SimpleMeterRegistry(), 100, 3600, 86400, nanos::get);
+	}
+
+	@Test
+	public void getTimeSeriesDescriptionsTest() {
+		Map<String, TimeSeriesDescription> first = cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1", "ts2")));
+		assertEquals(first.size(), 2);
+		assertEquals(first.get("ts1").getIdentifier(), "ts1@loc");
+		assertEquals(first.get("ts2").getIdentifier(), "ts2@loc");
+
+		Map<String, TimeSeriesDescription> second = cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1", "ts2")));
+		assertSame(first.get("ts1"), second.get("ts1"));
+		assertSame(first.get("ts2"), second.get("ts2"));
+		verify(tsDescService, times(1)).getTimeSeriesDescriptionList(any());
+	}
+
+	@Test
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public void onlyMissingFetchedTest() {
+		cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1")));
+		Map<String, TimeSeriesDescription> result = cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1", "ts2", "ts3")));
+		assertEquals(result.size(), 3);
+		ArgumentCaptor<List> requested = ArgumentCaptor.forClass(List.class);
+		verify(tsDescService, times(2)).getTimeSeriesDescriptionList(requested.capture());
+		assertEquals(requested.getAllValues().get(0), Arrays.asList("ts1"));
+		assertEquals(new HashSet<>(requested.getAllValues().get(1)), new HashSet<>(Arrays.asList("ts2", "ts3")));
+	}
+
+	@Test
+	public void notFoundTest() {
+		Map<String, TimeSeriesDescription> result = cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1", "missing")));
+		assertEquals(result.size(), 1);
+		assertFalse(result.containsKey("missing"));
+	}
+
+	@Test
+	public void refreshTest() {
+		TimeSeriesDescription first = cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1"))).get("ts1");
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(3601));
+
+		// The cached copy is returned while the refresh waits on the executor
+		assertSame(cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1"))).get("ts1"), first);
+		verify(tsDescService, times(1)).getTimeSeriesDescriptionList(any());
+
+		runRefreshes();
+		verify(tsDescService, times(2)).getTimeSeriesDescriptionList(any());
+		assertNotSame(cache.getTimeSeriesDescriptions(new HashSet<>(Arrays.asList("ts1"))).get("ts1"), first);
+	}
+
+	// Also runs the cache maintenance queued on the executor
+	private void runRefreshes() {
+		while(!refreshes.isEmpty()) {
+			refreshes.remove(0).run();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package gov.usgs.aqcu.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import com.sun.net.httpserver.HttpServer;
+
+import feign.RequestInterceptor;
+
+public class JavaToRStreamingClientTest {
+	private HttpServer server;
+	private JavaToRStreamingClient client;
+	private String requestPath;
+	private String requestQuery;
+	private String requestUserHeader;
+	private String requestContentType;
+	private String requestAuthorization;
+	private String requestBody;
+	private int responseStatus;
+	private long responseDelay;
+
+	@Before
+	public void setup() throws Exception {
+		responseStatus = 200;
+		responseDelay = 0;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			requestPath = exchange.getRequestURI().getPath();
+			requestQuery = exchange.getRequestURI().getQuery();
+			requestUserHeader = exchange.getRequestHeaders().getFirst("requestingUser");
+			requestContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			requestAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+			requestBody = StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+			byte[] html = "<html>report</html>".getBytes(StandardCharsets.UTF_8);
+			if(responseDelay > 0) {
+				// The first bytes, then the rest after a delay
+				exchange.sendResponseHeaders(responseStatus, 0);
+				exchange.getResponseBody().write(html, 0, 6);
+				exchange.getResponseBody().flush();
+				try {
+					Thread.sleep(responseDelay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.getResponseBody().write(html, 6, html.length - 6);
+			} else {
+				exchange.sendResponseHeaders(responseStatus, html.length);
+				exchange.getResponseBody().write(html);
+			}
+			exchange.close();
+		});
+		server.start();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("authorizationInterceptor", (RequestInterceptor) template -> template.header("Authorization", "Bearer token"));
+		client = new JavaToRStreamingClient("http://localhost:" + server.getAddress().getPort() + "/", 1000, 5000,
+			beanFactory.getBeanProvider(RequestInterceptor.class));
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void renderTest() throws Exception {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		client.render("user1", "extremes", body -> body.write("{\"report\":1}".getBytes(StandardCharsets.UTF_8)), result);
+		assertEquals(result.toString("UTF-8"), "<html>report</html>");
+		assertEquals(requestBody, "{\"report\":1}");
+		assertTrue(requestContentType.startsWith("application/json"));
+		assertTrue(requestPath.endsWith("extremes"));
+		assertTrue("user1".equals(requestUserHeader) || requestQuery.contains("requestingUser=user1"));
+		assertEquals(requestAuthorization, "Bearer token");
+
+		// The request is built the same way every time
+		result = new ByteArrayOutputStream();
+		client.render("user2", "other", body -> body.write("{}".getBytes(StandardCharsets.UTF_8)), result);
+		assertEquals(result.toString("UTF-8"), "<html>report</html>");
+		assertTrue(requestPath.endsWith("other"));
+		assertTrue("user2".equals(requestUserHeader) || requestQuery.equals("requestingUser=user2"));
+	}
+
+	@Test
+	public void renderErrorTest() throws Exception {
+		responseStatus = 500;
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try {
+			client.render("user1", "extremes", body -> body.write("{}".getBytes(StandardCharsets.UTF_8)), result);
+			fail("Expected HystrixRuntimeException");
+		} catch (HystrixRuntimeException e) {
+			// Thrown by the Hystrix command, as by the Feign client
+			assertTrue(e.getCause() instanceof HttpServerErrorException);
+			assertEquals(result.size(), 0);
+		}
+	}
+
+	@Test
+	public void renderTimeoutTest() throws Exception {
+		// Longer than the default Hystrix timeout
+		responseDelay = 1500;
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		try {
+			client.render("user1", "extremes", body -> body.write("{}".getBytes(StandardCharsets.UTF_8)), result);
+			fail("Expected HystrixRuntimeException");
+		} catch (HystrixRuntimeException e) {
+			assertEquals(e.getFailureType(), HystrixRuntimeException.FailureType.TIMEOUT);
+		}
+		assertEquals(result.toString("UTF-8"), "<html>");
+
+		// Nothing is written once the command has failed
+		Thread.sleep(responseDelay);
+		assertEquals(result.toString("UTF-8"), "<html>");
+	}
+}
@@ -0,0 +1,125 @@
+package gov.usgs.aqcu.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+
+import gov.usgs.aqcu.model.ExtremesMinMax;
+import gov.usgs.aqcu.model.ExtremesPoint;
+import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
+
+public class CborWriterTest {
+	private ByteArrayOutputStream bytes;
+	private CborWriter writer;
+
+	@Before
+	public void setup() {
+		bytes = new ByteArrayOutputStream();
+		writer = new CborWriter(bytes);
+	}
+
+	@Test
+	public void valuesTest() throws Exception {
+		JsonArray values = new JsonArray();
+		values.add(0L);
+		values.add(23L);
+		values.add(24L);
+		values.add(-1L);
+		values.add(-500L);
+		values.add(70000L);
+		values.add("é");
+		values.add(true);
+		values.add(JsonNull.INSTANCE);
+		values.add(1.5D);
+		writer.write(values);
+		writer.flush();
+		assertArrayEquals(bytes.toByteArray(), bytes(
+			0x8A,
+			0x00, 0x17, 0x18, 0x18, 0x20, 0x39, 0x01, 0xF3, 0x1A, 0x00, 0x01, 0x11, 0x70,
+			0x62, 0xC3, 0xA9, 0xF5, 0xF6, 0xFB, 0x3F, 0xF8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+		));
+	}
+
+	@Test
+	public void decimalTest() throws Exception {
+		JsonArray values = new JsonArray();
+		values.add(new BigDecimal("12.30"));
+		values.add(new BigDecimal("-0.5"));
+		values.add(new BigDecimal("4.1E+3"));
+		values.add(new BigDecimal("7"));
+		values.add(new BigDecimal(BigInteger.ONE.shiftLeft(64), 1));
+		writer.write(values);
+		writer.flush();
+		assertArrayEquals(bytes.toByteArray(), bytes(
+			0x85,
+			0xC4, 0x82, 0x21, 0x19, 0x04, 0xCE,
+			0xC4, 0x82, 0x20, 0x24,
+			0xC4, 0x82, 0x02, 0x18, 0x29,
+			0x07,
+			0xC4, 0x82, 0x20, 0xC2, 0x49, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+		));
+	}
+
+	@Test
+	public void temporalTest() throws Exception {
+		JsonArray values = new JsonArray();
+		values.add("2018-01-02T10:15:00Z");
+		values.add(Instant.ofEpochSecond(1, 500000000).toString());
+		values.add(Instant.ofEpochSecond(1, 1).toString());
+		values.add("1970-01-11");
+		// Not in the exact form an Instant or LocalDate writes
+		values.add("2018-01-02T10:15:00.000Z");
+		values.add("2018-1-2");
+		writer.write(values);
+		writer.flush();
+		assertArrayEquals(bytes.toByteArray(), bytes(
+			0x86,
+			0xC1, 0x1A, 0x5A, 0x4B, 0x5B, 0xA4,
+			0xC1, 0xC4, 0x82, 0x20, 0x0F,
+			0xC1, 0xC4, 0x82, 0x28, 0x1A, 0x3B, 0x9A, 0xCA, 0x01,
+			0xD8, 0x64, 0x0A,
+			0x78, 0x18, '2', '0', '1', '8', '-', '0', '1', '-', '0', '2', 'T', '1', '0', ':', '1', '5', ':', '0', '0', '.', '0', '0', '0', 'Z',
+			0x68, '2', '0', '1', '8', '-', '1', '-', '2'
+		));
+	}
+
+	@Test
+	public void reportTest() throws Exception {
+		Gson gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder()
+			.registerTypeAdapterFactory(new ExtremesReportTypeAdapterFactory())
+			.create();
+		ExtremesMinMax minMax = new ExtremesMinMax();
+		minMax.setMaxPoints(Arrays.asList(new ExtremesPoint().setTime(LocalDate.parse("1970-01-11")).setValue(new BigDecimal("1.5"))));
+		writer.write(gson.toJsonTree(minMax, ExtremesMinMax.class));
+		writer.flush();
+
+		// Null fields are left out, as in the JSON
+		assertArrayEquals(bytes.toByteArray(), bytes(
+			0xA1,
+			0x63, 'm', 'a', 'x', 0xA1,
+			0x66, 'p', 'o', 'i', 'n', 't', 's', 0x81,
+			0xA2, 0x64, 't', 'i', 'm', 'e', 0xD8, 0x64, 0x0A,
+			0x65, 'v', 'a', 'l', 'u', 'e', 0xC4, 0x82, 0x20, 0x0F
+		));
+	}
+
+	private static byte[] bytes(int... values) {
+		byte[] result = new byte[values.length];
+		for(int i = 0; i < values.length; i++) {
+			result[i] = (byte) values[i];
+		}
+		return result;
+	}
+}
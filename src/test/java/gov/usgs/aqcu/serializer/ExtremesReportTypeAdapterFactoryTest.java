@@ -0,0 +1,106 @@
+package gov.usgs.aqcu.serializer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.StreamUtils;
+
+import com.google.gson.Gson;
+
+import gov.usgs.aqcu.builder.ReportBuilderService;
+import gov.usgs.aqcu.model.ExtremesMinMax;
+import gov.usgs.aqcu.model.ExtremesPoint;
+import gov.usgs.aqcu.model.ExtremesQualifier;
+import gov.usgs.aqcu.model.ExtremesReport;
+import gov.usgs.aqcu.model.ExtremesReportMetadata;
+import gov.usgs.aqcu.util.AqcuGsonBuilderFactory;
+
+public class ExtremesReportTypeAdapterFactoryTest {
+	private Gson gson;
+	private Gson reflectiveGson;
+	private ExtremesReport report;
+
+	@Before
+	public void setup() {
+		gson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder()
+			.registerTypeAdapterFactory(new ExtremesReportTypeAdapterFactory())
+			.create();
+		reflectiveGson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().create();
+
+		ExtremesMinMax primary = new ExtremesMinMax();
+		primary.setMaxPoints(Arrays.asList(
+			new ExtremesPoint().setTime(Instant.parse("2018-01-02T10:15:00Z")).setValue(new BigDecimal("12.30")),
+			new ExtremesPoint().setTime(Instant.parse("2018-01-05T23:45:00Z")).setValue(new BigDecimal("12.30"))
+		));
+		primary.setMinPoints(Arrays.asList(new ExtremesPoint().setTime(Instant.parse("2018-01-09T00:00:00Z")).setValue(new BigDecimal("-0.5"))));
+		primary.setMaxRelatedPoints(Arrays.asList(new ExtremesPoint().setTime(Instant.parse("2018-01-02T10:15:00Z")).setValue(new BigDecimal("4.1E+3"))),
+			ReportBuilderService.UPCHAIN_RELATED_KEY);
+		primary.setMultipleMaxFlag(true);
+		primary.setMultipleMinFlag(false);
+		primary.setQualifiers(Arrays.asList(
+			new ExtremesQualifier().setIdentifier("ESTIMATED").setStartTime(Instant.parse("2018-01-01T00:00:00Z")).setEndTime(Instant.parse("2018-01-03T00:00:00Z")),
+			new ExtremesQualifier().setIdentifier("\"Ice\" <affected>")
+		));
+
+		ExtremesMinMax upchain = new ExtremesMinMax();
+		upchain.setMaxPoints(Arrays.asList(new ExtremesPoint().setTime(Instant.parse("2018-01-02T10:15:00Z")).setValue(new BigDecimal("4100"))));
+		upchain.setMinPoints(Arrays.asList(new ExtremesPoint().setTime(Instant.parse("2018-01-09T00:00:00Z"))));
+		upchain.setMaxRelatedPoints(Arrays.asList(new ExtremesPoint().setTime(Instant.parse("2018-01-02T10:15:00.123Z")).setValue(new BigDecimal("12.30"))),
+			ReportBuilderService.PRIMARY_RELATED_KEY);
+		upchain.setMultipleMaxFlag(false);
+		upchain.setMultipleMinFlag(false);
+		upchain.setQualifiers(Arrays.asList());
+
+		ExtremesMinMax dv = new ExtremesMinMax();
+		dv.setMaxPoints(Arrays.asList(new ExtremesPoint().setTime(LocalDate.parse("2018-01-02")).setValue(new BigDecimal("11.8"))));
+		dv.setMinPoints(Arrays.asList(new ExtremesPoint().setValue(new BigDecimal("0"))));
+		dv.setMultipleMaxFlag(false);
+		dv.setQualifiers(Arrays.asList(new ExtremesQualifier().setIdentifier("PROVISIONAL").setStartTime(LocalDate.parse("2018-01-01")).setEndTime(LocalDate.parse("2018-01-31"))));
+
+		report = new ExtremesReport();
+		report.setPrimary(primary);
+		report.setUpchain(upchain);
+		report.setDv(dv);
+	}
+
+	@Test
+	public void goldenTest() throws Exception {
+		String golden = StreamUtils.copyToString(getClass().getResourceAsStream("extremesReport.json"), StandardCharsets.UTF_8).trim();
+		assertEquals(gson.toJson(report, ExtremesReport.class), golden);
+		assertEquals(reflectiveGson.toJson(report, ExtremesReport.class), golden);
+	}
+
+	@Test
+	public void reflectiveTest() {
+		ExtremesReportMetadata metadata = new ExtremesReportMetadata();
+		metadata.setPrimaryLabel("Discharge.ft^3/s@01234567");
+		metadata.setInverted(true);
+		report.setReportMetadata(metadata);
+		assertEquals(gson.toJson(report, ExtremesReport.class), reflectiveGson.toJson(report, ExtremesReport.class));
+		assertEquals(gson.toJson(new ExtremesReport(), ExtremesReport.class), reflectiveGson.toJson(new ExtremesReport(), ExtremesReport.class));
+
+		// Nulls are written as the Gson instance is configured to
+		Gson nullsGson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder()
+			.registerTypeAdapterFactory(new ExtremesReportTypeAdapterFactory())
+			.serializeNulls()
+			.create();
+		Gson reflectiveNullsGson = AqcuGsonBuilderFactory.getConfiguredGsonBuilder().serializeNulls().create();
+		assertEquals(nullsGson.toJson(report, ExtremesReport.class), reflectiveNullsGson.toJson(report, ExtremesReport.class));
+	}
+
+	@Test
+	public void readTest() {
+		String json = gson.toJson(report, ExtremesReport.class);
+		ExtremesReport result = gson.fromJson(json, ExtremesReport.class);
+		assertEquals(result.getDv().getMax().get(ExtremesMinMax.MIN_MAX_POINTS_KEY).get(0).getTime(), LocalDate.parse("2018-01-02"));
+		assertEquals(result.getPrimary().getQualifiers().get(0).getEndTime(), Instant.parse("2018-01-03T00:00:00Z"));
+		assertEquals(gson.toJson(result, ExtremesReport.class), json);
+	}
+}